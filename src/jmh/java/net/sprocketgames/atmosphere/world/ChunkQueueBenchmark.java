@@ -0,0 +1,158 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * The structures behind the water system's chunk queue: the distance-ordered priority heap and the linked hash set
+ * of the normal lane. Keys are the chunks of a square around the origin in shuffled order, like chunks loading
+ * around a player.
+ *
+ * <p>The {@code deque*} benchmarks run the same operations against the boxed {@code ArrayDeque<Long>} lanes the
+ * queue used before, as a reference; removal and bumps there scan the deque.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkQueueBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private long[] keys;
+    private long[] priorities;
+
+    @Setup
+    public void createKeys() {
+        int side = (int) Math.ceil(Math.sqrt(size));
+        keys = new long[size];
+        priorities = new long[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            int x = i % side - side / 2;
+            int z = i / side - side / 2;
+            keys[i] = ChunkPos.asLong(x, z);
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+        for (int i = 0; i < size; i++) {
+            long dx = ChunkPos.getX(keys[i]);
+            long dz = ChunkPos.getZ(keys[i]);
+            priorities[i] = ((dx * dx + dz * dz) << 32) | i;
+        }
+    }
+
+    @Benchmark
+    public void heapFillAndDrain(Blackhole blackhole) {
+        ChunkPriorityHeap heap = new ChunkPriorityHeap();
+        for (int i = 0; i < size; i++) {
+            heap.upsert(keys[i], priorities[i]);
+        }
+        while (!heap.isEmpty()) {
+            blackhole.consume(heap.popFirst());
+        }
+    }
+
+    /**
+     * Every key moves once, as when a player crosses a chunk border and all queued distances change.
+     */
+    @Benchmark
+    public ChunkPriorityHeap heapReprioritize() {
+        ChunkPriorityHeap heap = new ChunkPriorityHeap();
+        for (int i = 0; i < size; i++) {
+            heap.upsert(keys[i], priorities[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            heap.upsert(keys[i], priorities[size - 1 - i]);
+        }
+        return heap;
+    }
+
+    /**
+     * Half the keys unload from the middle of the heap.
+     */
+    @Benchmark
+    public ChunkPriorityHeap heapRemove() {
+        ChunkPriorityHeap heap = new ChunkPriorityHeap();
+        for (int i = 0; i < size; i++) {
+            heap.upsert(keys[i], priorities[i]);
+        }
+        for (int i = 0; i < size; i += 2) {
+            heap.remove(keys[i]);
+        }
+        return heap;
+    }
+
+    @Benchmark
+    public void normalLaneCycle(Blackhole blackhole) {
+        LongLinkedOpenHashSet lane = new LongLinkedOpenHashSet();
+        for (int i = 0; i < size; i++) {
+            lane.add(keys[i]);
+        }
+        for (int i = 0; i < size; i += 4) {
+            lane.addAndMoveToFirst(keys[i]);
+        }
+        for (int i = 1; i < size; i += 4) {
+            lane.remove(keys[i]);
+        }
+        while (!lane.isEmpty()) {
+            blackhole.consume(lane.removeFirstLong());
+        }
+    }
+
+    @Benchmark
+    public void dequeFillAndDrain(Blackhole blackhole) {
+        ArrayDeque<Long> lane = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            lane.addLast(keys[i]);
+        }
+        while (!lane.isEmpty()) {
+            blackhole.consume(lane.pollFirst());
+        }
+    }
+
+    /**
+     * Every key is bumped once; the old priority lane moved a bumped key to the front.
+     */
+    @Benchmark
+    public ArrayDeque<Long> dequeReprioritize() {
+        ArrayDeque<Long> lane = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            lane.addLast(keys[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            lane.remove(keys[size - 1 - i]);
+            lane.addFirst(keys[size - 1 - i]);
+        }
+        return lane;
+    }
+
+    @Benchmark
+    public ArrayDeque<Long> dequeRemove() {
+        ArrayDeque<Long> lane = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            lane.addLast(keys[i]);
+        }
+        for (int i = 0; i < size; i += 2) {
+            lane.remove(keys[i]);
+        }
+        return lane;
+    }
+}
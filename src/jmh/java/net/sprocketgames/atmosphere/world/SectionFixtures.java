@@ -0,0 +1,160 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.Random;
+
+import com.mojang.serialization.Lifecycle;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.Holder;
+import net.minecraft.core.MappedRegistry;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelHeightAccessor;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.Biomes;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.SlabBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+import net.minecraft.world.level.block.state.properties.SlabType;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.ProtoChunk;
+import net.minecraft.world.level.chunk.UpgradeData;
+import net.minecraft.world.ticks.ProtoChunkTicks;
+
+/**
+ * Synthetic chunks for the kernel benchmarks, built without a level or world generator.
+ *
+ * <p>Chunks span the Overworld height (-64 to 319) and are filled column by column from a fixed seed, so every run
+ * and every version benchmarks identical block layouts. The biome containers hold an unbound holder that nothing
+ * ever reads.
+ */
+final class SectionFixtures {
+    static final int MIN_Y = -64;
+    static final int HEIGHT = 384;
+    static final int SEA_LEVEL = 62;
+    static final int FLOOR_Y = 40;
+    private static final long SEED = 0x41544D4FL;
+
+    enum Kind {
+        /** Nothing but air: every section is a whole-section fill candidate. */
+        EMPTY,
+        /** Solid stone up to the build limit: nothing to fill or drain, only palette checks. */
+        STONE,
+        /** Stone floor with a sand top, water up to sea level, air above. */
+        OCEAN,
+        /** Stone below sea level riddled with air and some water, grass on top. */
+        CAVES,
+        /** Ocean with many waterlogged blocks, both submerged and above sea level. */
+        WATERLOGGED
+    }
+
+    private static boolean bootstrapped;
+
+    private SectionFixtures() {
+    }
+
+    static synchronized void bootstrap() {
+        if (!bootstrapped) {
+            SharedConstants.tryDetectVersion();
+            Bootstrap.bootStrap();
+            bootstrapped = true;
+        }
+    }
+
+    static ProtoChunk chunk(Kind kind) {
+        MappedRegistry<Biome> biomes = new MappedRegistry<>(Registries.BIOME, Lifecycle.stable());
+        Holder<Biome> plains = Holder.Reference.createStandAlone(biomes.holderOwner(), Biomes.PLAINS);
+        LevelHeightAccessor height = LevelHeightAccessor.create(MIN_Y, HEIGHT);
+        LevelChunkSection[] sections = new LevelChunkSection[height.getSectionsCount()];
+        for (int i = 0; i < sections.length; i++) {
+            PalettedContainer<BlockState> states = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, Blocks.AIR.defaultBlockState(), PalettedContainer.Strategy.SECTION_STATES);
+            PalettedContainer<Holder<Biome>> biomeStates = new PalettedContainer<>(biomes.asHolderIdMap(), plains, PalettedContainer.Strategy.SECTION_BIOMES);
+            sections[i] = new LevelChunkSection(states, biomeStates);
+        }
+
+        Random random = new Random(SEED ^ kind.ordinal());
+        for (int i = 0; i < sections.length; i++) {
+            LevelChunkSection section = sections[i];
+            int sectionMinY = MIN_Y + (i << 4);
+            for (int y = 0; y < 16; y++) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        BlockState state = stateAt(kind, sectionMinY + y, random);
+                        if (!state.isAir()) {
+                            section.setBlockState(x, y, z, state, false);
+                        }
+                    }
+                }
+            }
+        }
+
+        return new ProtoChunk(ChunkPos.ZERO, UpgradeData.EMPTY, sections, new ProtoChunkTicks<>(), new ProtoChunkTicks<>(), height, biomes, null);
+    }
+
+    /**
+     * An independent copy of a section, so a benchmark invocation can mutate it without touching the fixture.
+     */
+    static LevelChunkSection copy(LevelChunkSection section) {
+        return new LevelChunkSection(section.getStates().copy(), section.getBiomes());
+    }
+
+    private static BlockState stateAt(Kind kind, int y, Random random) {
+        return switch (kind) {
+            case EMPTY -> Blocks.AIR.defaultBlockState();
+            case STONE -> Blocks.STONE.defaultBlockState();
+            case OCEAN -> ocean(y);
+            case CAVES -> caves(y, random);
+            case WATERLOGGED -> waterlogged(y, random);
+        };
+    }
+
+    private static BlockState ocean(int y) {
+        if (y < FLOOR_Y - 3) {
+            return Blocks.STONE.defaultBlockState();
+        }
+        if (y < FLOOR_Y) {
+            return Blocks.SAND.defaultBlockState();
+        }
+        return y <= SEA_LEVEL ? Blocks.WATER.defaultBlockState() : Blocks.AIR.defaultBlockState();
+    }
+
+    private static BlockState caves(int y, Random random) {
+        if (y > SEA_LEVEL + 1) {
+            return Blocks.AIR.defaultBlockState();
+        }
+        if (y == SEA_LEVEL + 1) {
+            return Blocks.GRASS_BLOCK.defaultBlockState();
+        }
+        float roll = random.nextFloat();
+        if (roll < 0.3F) {
+            return Blocks.AIR.defaultBlockState();
+        }
+        if (roll < 0.35F) {
+            return Blocks.WATER.defaultBlockState();
+        }
+        return Blocks.STONE.defaultBlockState();
+    }
+
+    private static BlockState waterlogged(int y, Random random) {
+        if (y < FLOOR_Y) {
+            return ocean(y);
+        }
+        float roll = random.nextFloat();
+        if (y > SEA_LEVEL + 8) {
+            return Blocks.AIR.defaultBlockState();
+        }
+        if (roll < 0.4F) {
+            return Blocks.OAK_SLAB.defaultBlockState()
+                    .setValue(SlabBlock.TYPE, random.nextBoolean() ? SlabType.BOTTOM : SlabType.TOP)
+                    .setValue(BlockStateProperties.WATERLOGGED, true);
+        }
+        if (roll < 0.5F && y <= SEA_LEVEL) {
+            return Blocks.SEAGRASS.defaultBlockState();
+        }
+        return ocean(y);
+    }
+}
@@ -0,0 +1,116 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.ProtoChunk;
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * Surface rule kernels over one whole chunk, with grass to dirt everywhere and sand to sandstone below sea level:
+ * compiling the rule table, the palette remap used for most sections, and the per-block path used for global-palette
+ * sections and sections the water line runs through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SurfaceKernelBenchmark {
+    @Param({"EMPTY", "STONE", "OCEAN", "CAVES", "WATERLOGGED"})
+    public SectionFixtures.Kind kind;
+
+    private static final ResourceKey<net.minecraft.world.level.Level> OVERWORLD = net.minecraft.world.level.Level.OVERWORLD;
+
+    private List<SurfaceRule> rules;
+    private List<ResourceLocation> ids;
+    private SurfaceRuleTable table;
+    private LevelChunkSection[] fixture;
+
+    @Setup(Level.Trial)
+    public void createFixture() {
+        SectionFixtures.bootstrap();
+        ProtoChunk chunk = SectionFixtures.chunk(kind);
+        fixture = chunk.getSections();
+        rules = List.of(
+                new SurfaceRule(Blocks.GRASS_BLOCK, Blocks.DIRT, Long.MIN_VALUE, Long.MAX_VALUE, SurfaceRule.Waterline.ANY, List.of(), 0),
+                new SurfaceRule(Blocks.SAND, Blocks.SANDSTONE, Long.MIN_VALUE, Long.MAX_VALUE, SurfaceRule.Waterline.BELOW, List.of(), 0));
+        ids = List.of(Atmosphere.id("grass_to_dirt"), Atmosphere.id("sand_to_sandstone"));
+        table = SurfaceRuleTable.compile(rules, ids, OVERWORLD, 0L, SectionFixtures.SEA_LEVEL);
+    }
+
+    /**
+     * Both substitution paths mutate sections, so every invocation gets fresh copies.
+     */
+    @State(Scope.Thread)
+    public static class SectionCopies {
+        LevelChunkSection[] target;
+
+        @Setup(Level.Invocation)
+        public void copy(SurfaceKernelBenchmark benchmark) {
+            target = new LevelChunkSection[benchmark.fixture.length];
+            for (int i = 0; i < target.length; i++) {
+                target[i] = SectionFixtures.copy(benchmark.fixture[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public SurfaceRuleTable compile() {
+        return SurfaceRuleTable.compile(rules, ids, OVERWORLD, 0L, SectionFixtures.SEA_LEVEL);
+    }
+
+    @Benchmark
+    public int paletteRemap(SectionCopies copies) {
+        LevelChunkSection[] target = copies.target;
+        int remapped = 0;
+        for (int i = 0; i < target.length; i++) {
+            LevelChunkSection section = target[i];
+            boolean above = sectionMinY(i) > SectionFixtures.SEA_LEVEL;
+            if (PaletteRemap.remap(section, state -> table.map(state, above)) == PaletteRemap.REMAPPED) {
+                remapped++;
+            }
+        }
+        return remapped;
+    }
+
+    @Benchmark
+    public int perBlock(SectionCopies copies) {
+        LevelChunkSection[] target = copies.target;
+        int changed = 0;
+        for (int i = 0; i < target.length; i++) {
+            LevelChunkSection section = target[i];
+            int sectionMinY = sectionMinY(i);
+            for (int y = 0; y < 16; y++) {
+                boolean above = sectionMinY + y > SectionFixtures.SEA_LEVEL;
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        BlockState replacement = table.lookup(section.getBlockState(x, y, z), above);
+                        if (replacement != null) {
+                            section.setBlockState(x, y, z, replacement, false);
+                            changed++;
+                        }
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static int sectionMinY(int sectionIndex) {
+        return SectionFixtures.MIN_Y + (sectionIndex << 4);
+    }
+}
@@ -0,0 +1,117 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.ProtoChunk;
+import net.sprocketgames.atmosphere.data.ChunkWaterSummary;
+
+/**
+ * Water pass kernels over one whole chunk: capture on the server thread, analysis on a worker, and applying the
+ * resulting plan (whole-section fills and drains plus masked per-block writes).
+ *
+ * <p>{@code waterLevel} 100 raises the water over every fixture, 20 drains it below the ocean floor. Each pass
+ * starts from an unnarrowed water summary, as a chunk's first pass does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WaterKernelBenchmark {
+    @Param({"EMPTY", "STONE", "OCEAN", "CAVES", "WATERLOGGED"})
+    public SectionFixtures.Kind kind;
+
+    @Param({"100", "20"})
+    public int waterLevel;
+
+    private ProtoChunk fixture;
+
+    @Setup(Level.Trial)
+    public void createFixture() {
+        SectionFixtures.bootstrap();
+        fixture = SectionFixtures.chunk(kind);
+    }
+
+    /**
+     * Apply mutates sections, so every invocation gets fresh copies and a plan analysed ahead of time.
+     */
+    @State(Scope.Thread)
+    public static class ApplyState {
+        WaterChunkPlan analysed;
+        LevelChunkSection[] target;
+
+        @Setup(Level.Invocation)
+        public void prepare(WaterKernelBenchmark benchmark) {
+            LevelChunkSection[] sections = benchmark.fixture.getSections();
+            target = new LevelChunkSection[sections.length];
+            for (int i = 0; i < sections.length; i++) {
+                target[i] = SectionFixtures.copy(sections[i]);
+            }
+            analysed = WaterChunkPlan.capture(benchmark.fixture, new ChunkWaterSummary(), benchmark.waterLevel, true).analyze();
+        }
+    }
+
+    @Benchmark
+    public WaterChunkPlan capture() {
+        return WaterChunkPlan.capture(fixture, new ChunkWaterSummary(), waterLevel, true);
+    }
+
+    @Benchmark
+    public WaterChunkPlan captureAndAnalyze() {
+        return WaterChunkPlan.capture(fixture, new ChunkWaterSummary(), waterLevel, true).analyze();
+    }
+
+    /**
+     * The generation-time apply: bulk sections are swapped for single-value containers and masked positions are
+     * rewritten directly, with no light checks or packets.
+     */
+    @Benchmark
+    public LevelChunkSection[] apply(ApplyState state) {
+        LevelChunkSection[] target = state.target;
+        for (WaterChunkPlan.SectionPlan sectionPlan : state.analysed.sections) {
+            if (sectionPlan.bulk == WaterChunkPlan.BULK_FILL || sectionPlan.bulk == WaterChunkPlan.BULK_DRAIN) {
+                BlockState fill = sectionPlan.bulk == WaterChunkPlan.BULK_FILL ? Blocks.WATER.defaultBlockState() : Blocks.AIR.defaultBlockState();
+                PalettedContainer<BlockState> states = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, fill, PalettedContainer.Strategy.SECTION_STATES);
+                target[sectionPlan.sectionIndex] = new LevelChunkSection(states, target[sectionPlan.sectionIndex].getBiomes());
+                continue;
+            }
+
+            long[] mask = sectionPlan.mask;
+            if (mask == null) {
+                continue;
+            }
+
+            LevelChunkSection section = target[sectionPlan.sectionIndex];
+            int sectionMinY = SectionPos.sectionToBlockCoord(sectionPlan.sectionY);
+            for (int word = 0; word < mask.length; word++) {
+                long bits = mask[word];
+                while (bits != 0L) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int x = index >> 8;
+                    int z = (index >> 4) & 15;
+                    int y = index & 15;
+                    BlockState replacement = WaterStateTable.targetState(section.getBlockState(x, y, z), sectionMinY + y, state.analysed.waterLevelY, true);
+                    if (replacement != null) {
+                        section.setBlockState(x, y, z, replacement, false);
+                    }
+                }
+            }
+        }
+        return target;
+    }
+}
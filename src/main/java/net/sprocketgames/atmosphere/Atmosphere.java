@@ -10,10 +10,18 @@ import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.sprocketgames.atmosphere.events.TerraformIndexEvents;
+import net.sprocketgames.atmosphere.data.AtmosphereAttachments;
 import net.sprocketgames.atmosphere.data.TerraformIndexData;
 import net.sprocketgames.atmosphere.commands.TerraformCommands;
 import net.sprocketgames.atmosphere.network.AtmosphereNetwork;
+import net.sprocketgames.atmosphere.network.TerraformIndexBroadcaster;
+import net.sprocketgames.atmosphere.network.TerraformUpdatePacer;
+import net.sprocketgames.atmosphere.world.AtmosphereFeatures;
+import net.sprocketgames.atmosphere.world.SurfaceRuleManager;
+import net.sprocketgames.atmosphere.world.TerraformPregen;
+import net.sprocketgames.atmosphere.world.TerraformSurfaceSystem;
 import net.sprocketgames.atmosphere.world.TerraformWaterSystem;
+import net.sprocketgames.atmosphere.world.WaterStateTable;
 
 // The value here should match an entry in the META-INF/neoforge.mods.toml file
 @Mod(Atmosphere.MOD_ID)
@@ -24,13 +32,35 @@ public class Atmosphere {
     public Atmosphere(IEventBus modEventBus) {
         modEventBus.addListener(this::onCommonSetup);
         modEventBus.addListener(AtmosphereNetwork::register);
+        AtmosphereAttachments.ATTACHMENT_TYPES.register(modEventBus);
+        AtmosphereFeatures.FEATURES.register(modEventBus);
 
         // Gameplay listeners live on the NeoForge event bus.
         NeoForge.EVENT_BUS.addListener(TerraformIndexEvents::onPlayerLogin);
         NeoForge.EVENT_BUS.addListener(TerraformIndexEvents::onChunkLoad);
         NeoForge.EVENT_BUS.addListener(TerraformIndexEvents::onChunkUnload);
+        NeoForge.EVENT_BUS.addListener(TerraformIndexEvents::onServerStopped);
         NeoForge.EVENT_BUS.addListener(TerraformCommands::register);
         NeoForge.EVENT_BUS.addListener(TerraformWaterSystem::onLevelTick);
+        NeoForge.EVENT_BUS.addListener(TerraformWaterSystem::onLevelLoad);
+        NeoForge.EVENT_BUS.addListener(TerraformWaterSystem::onLevelUnload);
+        NeoForge.EVENT_BUS.addListener(TerraformWaterSystem::onEnteringSection);
+        NeoForge.EVENT_BUS.addListener(TerraformWaterSystem::onEntityJoinLevel);
+        NeoForge.EVENT_BUS.addListener(TerraformWaterSystem::onEntityLeaveLevel);
+        NeoForge.EVENT_BUS.addListener(TerraformSurfaceSystem::onLevelTick);
+        NeoForge.EVENT_BUS.addListener(TerraformSurfaceSystem::onLevelUnload);
+        NeoForge.EVENT_BUS.addListener(SurfaceRuleManager::onAddReloadListeners);
+        NeoForge.EVENT_BUS.addListener(TerraformPregen::onLevelTick);
+        NeoForge.EVENT_BUS.addListener(TerraformPregen::onLevelUnload);
+        NeoForge.EVENT_BUS.addListener(WaterStateTable::onTagsUpdated);
+        NeoForge.EVENT_BUS.addListener(TerraformUpdatePacer::onServerTick);
+        NeoForge.EVENT_BUS.addListener(TerraformUpdatePacer::onPlayerLoggedOut);
+        NeoForge.EVENT_BUS.addListener(TerraformUpdatePacer::onServerStopped);
+        NeoForge.EVENT_BUS.addListener(TerraformIndexBroadcaster::onServerStarting);
+        NeoForge.EVENT_BUS.addListener(TerraformIndexBroadcaster::onServerTick);
+        NeoForge.EVENT_BUS.addListener(TerraformIndexBroadcaster::onPlayerChangedDimension);
+        NeoForge.EVENT_BUS.addListener(TerraformIndexBroadcaster::onPlayerRespawn);
+        NeoForge.EVENT_BUS.addListener(TerraformIndexBroadcaster::onPlayerLoggedOut);
     }
 
     private void onCommonSetup(FMLCommonSetupEvent event) {
@@ -1,6 +1,7 @@
 package net.sprocketgames.atmosphere.client;
 
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiGraphics;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.Mod;
@@ -23,11 +24,21 @@ public class AtmosphereClient {
         }
 
         var guiGraphics = event.getGuiGraphics();
-        String text = "Ti: " + ClientTerraformIndex.getTerraformIndex();
-        int textWidth = minecraft.font.width(text);
-        int x = minecraft.getWindow().getGuiScaledWidth() - textWidth - 4;
         int y = 4;
+        y = drawRightAligned(guiGraphics, minecraft, "Ti: " + ClientTerraformIndex.getTerraformIndex(), y);
+        if (ClientTerraformIndex.getStage() > 0) {
+            y = drawRightAligned(guiGraphics, minecraft, "Stage: " + ClientTerraformIndex.getStage(), y);
+        }
+        if (ClientTerraformIndex.isWaterEnabled()) {
+            drawRightAligned(guiGraphics, minecraft, "Water: Y " + ClientTerraformIndex.getWaterLevelY(), y);
+        }
+    }
 
+    // Draws one HUD line against the right edge and returns the Y of the next line.
+    private static int drawRightAligned(GuiGraphics guiGraphics, Minecraft minecraft, String text, int y) {
+        int textWidth = minecraft.font.width(text);
+        int x = minecraft.getWindow().getGuiScaledWidth() - textWidth - 4;
         guiGraphics.drawString(minecraft.font, text, x, y, 0xFFFFFF, true);
+        return y + minecraft.font.lineHeight + 2;
     }
 }
@@ -1,10 +1,15 @@
 package net.sprocketgames.atmosphere.client;
 
+import net.sprocketgames.atmosphere.network.TerraformIndexSyncPayload;
+
 /**
- * Client-side holder for the Terraform Index synchronized from the server.
+ * Client-side holder for the Terraform Index, water level and stage synchronized from the server.
  */
 public final class ClientTerraformIndex {
     private static long terraformIndex;
+    private static boolean waterEnabled;
+    private static int waterLevelY;
+    private static int stage;
 
     private ClientTerraformIndex() {
     }
@@ -13,7 +18,35 @@ public final class ClientTerraformIndex {
         return terraformIndex;
     }
 
-    public static void setTerraformIndex(long terraformIndex) {
-        ClientTerraformIndex.terraformIndex = terraformIndex;
+    /**
+     * Whether the player's dimension runs the water system, i.e. whether {@link #getWaterLevelY()} means anything.
+     */
+    public static boolean isWaterEnabled() {
+        return waterEnabled;
+    }
+
+    public static int getWaterLevelY() {
+        return waterLevelY;
+    }
+
+    public static int getStage() {
+        return stage;
+    }
+
+    /**
+     * Applies a full update or the fields changed since the previous one.
+     */
+    public static void apply(TerraformIndexSyncPayload payload) {
+        boolean full = payload.has(TerraformIndexSyncPayload.FULL);
+        if (payload.has(TerraformIndexSyncPayload.INDEX)) {
+            terraformIndex = full ? payload.terraformIndex() : terraformIndex + payload.terraformIndex();
+        }
+        if (payload.has(TerraformIndexSyncPayload.WATER_LEVEL)) {
+            waterEnabled = payload.has(TerraformIndexSyncPayload.WATER_ENABLED);
+            waterLevelY = payload.waterLevelY();
+        }
+        if (payload.has(TerraformIndexSyncPayload.STAGE)) {
+            stage = payload.stage();
+        }
     }
 }
@@ -0,0 +1,100 @@
+package net.sprocketgames.atmosphere.client;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.sprocketgames.atmosphere.network.SectionSnapshotPayload;
+import net.sprocketgames.atmosphere.network.WaterSectionPayload;
+import net.sprocketgames.atmosphere.world.WaterStateTable;
+
+/**
+ * Applies {@link WaterSectionPayload}s to the client's copy of a chunk.
+ *
+ * <p>Snapshots ({@link SectionSnapshotPayload}) are diffed against the client's section so only positions that
+ * actually differ are written.
+ *
+ * <p>Every position is written through the chunk, which keeps heightmaps and client light in step, but the section
+ * is only marked for a mesh rebuild once at the end instead of once per block. Sky and block light values still
+ * arrive from the server in the usual light update packets.
+ */
+public final class ClientWaterSections {
+    private ClientWaterSections() {
+    }
+
+    public static void apply(WaterSectionPayload payload) {
+        LevelChunk chunk = loadedChunk(payload.chunkX(), payload.chunkZ(), payload.sectionY());
+        if (chunk == null) {
+            return;
+        }
+
+        int sectionMinY = SectionPos.sectionToBlockCoord(payload.sectionY());
+        int baseX = chunk.getPos().getMinBlockX();
+        int baseZ = chunk.getPos().getMinBlockZ();
+        BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+        payload.forEachIndex(index -> {
+            int worldY = sectionMinY + (index & 15);
+            cursor.set(baseX + (index >> 8), worldY, baseZ + ((index >> 4) & 15));
+            BlockState target = WaterStateTable.targetState(chunk.getBlockState(cursor), worldY, payload.waterLevelY(), payload.allowFill());
+            if (target != null) {
+                chunk.setBlockState(cursor, target, false);
+            }
+        });
+        Minecraft.getInstance().levelRenderer.setSectionDirtyWithNeighbors(payload.chunkX(), payload.sectionY(), payload.chunkZ());
+    }
+
+    public static void applySnapshot(SectionSnapshotPayload payload) {
+        LevelChunk chunk = loadedChunk(payload.chunkX(), payload.chunkZ(), payload.sectionY());
+        if (chunk == null) {
+            return;
+        }
+
+        PalettedContainer<BlockState> states = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, Blocks.AIR.defaultBlockState(), PalettedContainer.Strategy.SECTION_STATES);
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.wrappedBuffer(payload.states()));
+        states.read(buffer);
+
+        LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(payload.sectionY()));
+        int sectionMinY = SectionPos.sectionToBlockCoord(payload.sectionY());
+        BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    BlockState target = states.get(x, y, z);
+                    if (section.getBlockState(x, y, z) != target) {
+                        chunk.setBlockState(cursor.set(chunk.getPos().getMinBlockX() + x, sectionMinY + y, chunk.getPos().getMinBlockZ() + z), target, false);
+                    }
+                }
+            }
+        }
+        Minecraft.getInstance().levelRenderer.setSectionDirtyWithNeighbors(payload.chunkX(), payload.sectionY(), payload.chunkZ());
+    }
+
+    /**
+     * The client's chunk if it is loaded and has the section. Chunks that are not loaded here need nothing: the
+     * full chunk packet sent when tracking starts already holds the changes.
+     */
+    @Nullable
+    private static LevelChunk loadedChunk(int chunkX, int chunkZ, int sectionY) {
+        ClientLevel level = Minecraft.getInstance().level;
+        if (level == null) {
+            return null;
+        }
+
+        LevelChunk chunk = level.getChunkSource().getChunk(chunkX, chunkZ, false);
+        if (chunk == null) {
+            return null;
+        }
+        int sectionIndex = chunk.getSectionIndexFromSectionY(sectionY);
+        return sectionIndex >= 0 && sectionIndex < chunk.getSectionsCount() ? chunk : null;
+    }
+}
@@ -1,14 +1,23 @@
 package net.sprocketgames.atmosphere.commands;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.DimensionArgument;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.sprocketgames.atmosphere.data.PregenState;
 import net.sprocketgames.atmosphere.data.TerraformIndexData;
+import net.sprocketgames.atmosphere.network.TerraformIndexBroadcaster;
+import net.sprocketgames.atmosphere.network.TerraformUpdatePacer;
+import net.sprocketgames.atmosphere.world.TerraformPregen;
+import net.sprocketgames.atmosphere.world.TerraformStats;
+import net.sprocketgames.atmosphere.world.TerraformTickBudget;
 import net.sprocketgames.atmosphere.world.TerraformWaterSystem;
 
 public final class TerraformCommands {
@@ -19,26 +28,302 @@ public final class TerraformCommands {
         CommandDispatcher<CommandSourceStack> dispatcher = event.getDispatcher();
         dispatcher.register(Commands.literal("terraform")
                 .requires(source -> source.hasPermission(2))
-                .then(Commands.literal("get").executes(context -> {
-                    ServerLevel overworld = context.getSource().getServer().overworld();
-                    TerraformIndexData data = TerraformIndexData.get(overworld);
-                    long terraformIndex = data.getTerraformIndex();
-                    int waterLevelY = data.getWaterLevelY();
-                    context.getSource().sendSuccess(
-                            () -> Component.literal("Ti=" + terraformIndex + ", waterLevelY=" + waterLevelY), false);
-                    return 1;
-                }))
+                .then(Commands.literal("get")
+                        .executes(context -> get(context.getSource(), context.getSource().getServer().overworld()))
+                        .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                .executes(context -> get(context.getSource(), DimensionArgument.getDimension(context, "dimension")))))
                 .then(Commands.literal("setWaterLevel")
                         .then(Commands.argument("y", IntegerArgumentType.integer(-64, 320))
+                                .executes(context -> setWaterLevel(
+                                        context.getSource(),
+                                        context.getSource().getServer().overworld(),
+                                        IntegerArgumentType.getInteger(context, "y")))
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(context -> setWaterLevel(
+                                                context.getSource(),
+                                                DimensionArgument.getDimension(context, "dimension"),
+                                                IntegerArgumentType.getInteger(context, "y"))))))
+                .then(Commands.literal("disable")
+                        .then(Commands.argument("dimension", DimensionArgument.dimension())
                                 .executes(context -> {
-                                    int y = IntegerArgumentType.getInteger(context, "y");
-                                    ServerLevel overworld = context.getSource().getServer().overworld();
-                                    TerraformIndexData data = TerraformIndexData.get(overworld);
-                                    data.setWaterLevelY(y);
-                                    TerraformWaterSystem.requeueLoaded(overworld);
+                                    ServerLevel level = DimensionArgument.getDimension(context, "dimension");
+                                    TerraformIndexData.get(level).setWaterSystemEnabled(false);
                                     context.getSource().sendSuccess(
-                                            () -> Component.literal("Set waterLevelY to " + y), true);
+                                            () -> Component.literal("Disabled terraform water in " + level.dimension().location()), true);
                                     return 1;
-                                }))));
+                                })))
+                .then(Commands.literal("pregen")
+                        .then(Commands.argument("radius", IntegerArgumentType.integer(0, 1024))
+                                .executes(context -> startPregen(
+                                        context.getSource(),
+                                        context.getSource().getServer().overworld(),
+                                        IntegerArgumentType.getInteger(context, "radius")))
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(context -> startPregen(
+                                                context.getSource(),
+                                                DimensionArgument.getDimension(context, "dimension"),
+                                                IntegerArgumentType.getInteger(context, "radius")))))
+                        .then(Commands.literal("status")
+                                .executes(context -> pregenStatus(context.getSource())))
+                        .then(Commands.literal("pause")
+                                .executes(context -> pausePregen(context.getSource(), context.getSource().getServer().overworld(), true))
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(context -> pausePregen(context.getSource(), DimensionArgument.getDimension(context, "dimension"), true))))
+                        .then(Commands.literal("resume")
+                                .executes(context -> pausePregen(context.getSource(), context.getSource().getServer().overworld(), false))
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(context -> pausePregen(context.getSource(), DimensionArgument.getDimension(context, "dimension"), false))))
+                        .then(Commands.literal("cancel")
+                                .executes(context -> cancelPregen(context.getSource(), context.getSource().getServer().overworld()))
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(context -> cancelPregen(context.getSource(), DimensionArgument.getDimension(context, "dimension"))))))
+                .then(Commands.literal("stats")
+                        .executes(context -> stats(context.getSource()))
+                        .then(Commands.literal("reset")
+                                .executes(context -> {
+                                    for (TerraformWaterSystem system : TerraformWaterSystem.systems()) {
+                                        system.stats().reset();
+                                    }
+                                    context.getSource().sendSuccess(() -> Component.literal("Reset terraform stats"), true);
+                                    return 1;
+                                })))
+                .then(Commands.literal("budget")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() -> Component.literal(String.format(
+                                    "min %.2fms, max %.2fms, targetMspt=%.1fms",
+                                    millis(TerraformTickBudget.getMinBudgetNanos()),
+                                    millis(TerraformTickBudget.getMaxBudgetNanos()),
+                                    millis(TerraformTickBudget.getTargetTickNanos()))), false);
+                            for (TerraformWaterSystem system : TerraformWaterSystem.systems()) {
+                                TerraformTickBudget budget = system.budget();
+                                context.getSource().sendSuccess(() -> Component.literal(String.format(
+                                        "%s: budget=%.2fms, avgPass=%.2fms, queued=%d",
+                                        system.level().dimension().location(),
+                                        millis(budget.getBudgetNanos()),
+                                        millis(budget.getAveragePassNanos()),
+                                        system.queuedChunks())), false);
+                            }
+                            return 1;
+                        })
+                        .then(Commands.literal("min")
+                                .then(Commands.argument("ms", DoubleArgumentType.doubleArg(0.0, 50.0))
+                                        .executes(context -> {
+                                            double ms = DoubleArgumentType.getDouble(context, "ms");
+                                            TerraformTickBudget.setMinBudgetMillis(ms);
+                                            context.getSource().sendSuccess(
+                                                    () -> Component.literal("Set minimum terraform budget to " + ms + "ms"), true);
+                                            return 1;
+                                        })))
+                        .then(Commands.literal("max")
+                                .then(Commands.argument("ms", DoubleArgumentType.doubleArg(0.0, 50.0))
+                                        .executes(context -> {
+                                            double ms = DoubleArgumentType.getDouble(context, "ms");
+                                            TerraformTickBudget.setMaxBudgetMillis(ms);
+                                            context.getSource().sendSuccess(
+                                                    () -> Component.literal("Set maximum terraform budget to " + ms + "ms"), true);
+                                            return 1;
+                                        })))
+                        .then(Commands.literal("targetMspt")
+                                .then(Commands.argument("ms", DoubleArgumentType.doubleArg(1.0, 1000.0))
+                                        .executes(context -> {
+                                            double ms = DoubleArgumentType.getDouble(context, "ms");
+                                            TerraformTickBudget.setTargetTickMillis(ms);
+                                            context.getSource().sendSuccess(
+                                                    () -> Component.literal("Set terraform target MSPT to " + ms + "ms"), true);
+                                            return 1;
+                                        }))))
+                .then(Commands.literal("pacing")
+                        .executes(context -> pacing(context.getSource()))
+                        .then(Commands.literal("sections")
+                                .then(Commands.argument("count", IntegerArgumentType.integer(1, 4096))
+                                        .executes(context -> {
+                                            int count = IntegerArgumentType.getInteger(context, "count");
+                                            TerraformUpdatePacer.setMaxSectionsPerTick(count);
+                                            context.getSource().sendSuccess(
+                                                    () -> Component.literal("Set terraform updates to " + count + " sections per player per tick"), true);
+                                            return 1;
+                                        })))
+                        .then(Commands.literal("kilobytes")
+                                .then(Commands.argument("kb", IntegerArgumentType.integer(1, 8192))
+                                        .executes(context -> {
+                                            int kb = IntegerArgumentType.getInteger(context, "kb");
+                                            TerraformUpdatePacer.setMaxBytesPerTick(kb * 1024);
+                                            context.getSource().sendSuccess(
+                                                    () -> Component.literal("Set terraform updates to " + kb + " KiB per player per tick"), true);
+                                            return 1;
+                                        })))
+                        .then(Commands.literal("syncTicks")
+                                .then(Commands.argument("ticks", IntegerArgumentType.integer(1, 1200))
+                                        .executes(context -> {
+                                            int ticks = IntegerArgumentType.getInteger(context, "ticks");
+                                            TerraformIndexBroadcaster.setIntervalTicks(ticks);
+                                            context.getSource().sendSuccess(
+                                                    () -> Component.literal("Set Terraform Index sync to at most every " + ticks + " ticks"), true);
+                                            return 1;
+                                        })))));
+    }
+
+    private static int get(CommandSourceStack source, ServerLevel level) {
+        long terraformIndex = TerraformIndexData.global(source.getServer()).getTerraformIndex();
+        TerraformIndexData data = TerraformIndexData.get(level);
+        int waterLevelY = data.getWaterLevelY();
+        boolean enabled = data.isWaterSystemEnabled();
+        source.sendSuccess(() -> Component.literal(
+                "Ti=" + terraformIndex + ", waterLevelY=" + waterLevelY + ", water " + (enabled ? "enabled" : "disabled")
+                        + " in " + level.dimension().location()), false);
+        return 1;
+    }
+
+    /**
+     * Sets the level's water level and enables its water system, queueing every loaded chunk.
+     */
+    private static int setWaterLevel(CommandSourceStack source, ServerLevel level, int y) {
+        TerraformIndexData data = TerraformIndexData.get(level);
+        data.setWaterLevelY(y);
+        data.setWaterSystemEnabled(true);
+        TerraformWaterSystem.forLevel(level).requeueLoaded();
+        source.sendSuccess(() -> Component.literal("Set waterLevelY to " + y + " in " + level.dimension().location()), true);
+        return 1;
+    }
+
+    /**
+     * Per-level water system counters since the last reset. Times are histogram bucket bounds, see
+     * {@link TerraformStats}.
+     */
+    private static int stats(CommandSourceStack source) {
+        for (TerraformWaterSystem system : TerraformWaterSystem.systems()) {
+            TerraformStats stats = system.stats();
+            TerraformStats.Histogram ticks = stats.tickTimes();
+            TerraformStats.Histogram passes = stats.passTimes();
+            double seconds = stats.elapsedNanos() / 1_000_000_000.0;
+            source.sendSuccess(() -> Component.literal(String.format(
+                    "%s over %.0fs: %d chunks (%.1f/s), placed %d, drained %d, un-waterlogged %d, light checks %d",
+                    system.level().dimension().location(),
+                    seconds,
+                    stats.chunks(),
+                    stats.chunks() / Math.max(1.0, seconds),
+                    stats.placed(),
+                    stats.drained(),
+                    stats.unwaterlogged(),
+                    stats.lightChecks())), false);
+            source.sendSuccess(() -> Component.literal(String.format(
+                    "  tick: %d busy, avg %.2fms, p50 %.2fms, p95 %.2fms, p99 %.2fms, max %.2fms",
+                    ticks.count(),
+                    millis(ticks.averageNanos()),
+                    millis(ticks.percentileNanos(50.0)),
+                    millis(ticks.percentileNanos(95.0)),
+                    millis(ticks.percentileNanos(99.0)),
+                    millis(ticks.maxNanos()))), false);
+            source.sendSuccess(() -> Component.literal(String.format(
+                    "  pass: avg %.2fms, p50 %.2fms, p95 %.2fms, max %.2fms",
+                    millis(passes.averageNanos()),
+                    millis(passes.percentileNanos(50.0)),
+                    millis(passes.percentileNanos(95.0)),
+                    millis(passes.maxNanos()))), false);
+            source.sendSuccess(() -> Component.literal(String.format(
+                    "  queue: priority %d, normal %d, cleanup %d, oldest %.1fs",
+                    system.queuedPriority(),
+                    system.queuedNormal(),
+                    system.queuedCleanup(),
+                    system.oldestTaskAgeNanos() / 1_000_000_000.0)), false);
+            if (system.pendingMigrations() > 0 || stats.migrated() > 0 || stats.migrationsSkipped() > 0) {
+                source.sendSuccess(() -> Component.literal(String.format(
+                        "  migration to revision %d: %d loaded chunks pending, %d migrated, %d unaffected",
+                        TerraformIndexData.CURRENT_HYDRATION_REVISION,
+                        system.pendingMigrations(),
+                        stats.migrated(),
+                        stats.migrationsSkipped())), false);
+            }
+        }
+        return TerraformWaterSystem.systems().size();
+    }
+
+    /**
+     * Generates and terraforms a square of {@code 2 * radius + 1} chunks around the level's spawn.
+     */
+    private static int startPregen(CommandSourceStack source, ServerLevel level, int radius) {
+        TerraformPregen.forLevel(level).start(radius);
+        int side = 2 * radius + 1;
+        source.sendSuccess(() -> Component.literal(
+                "Pre-generating " + side * side + " chunks around spawn in " + level.dimension().location()), true);
+        return 1;
+    }
+
+    /**
+     * Current client update pacing and index sync interval, and the updates still queued per player.
+     */
+    private static int pacing(CommandSourceStack source) {
+        source.sendSuccess(() -> Component.literal(String.format(
+                "%d sections, %d KiB per player per tick, index sync every %d ticks",
+                TerraformUpdatePacer.getMaxSectionsPerTick(),
+                TerraformUpdatePacer.getMaxBytesPerTick() / 1024,
+                TerraformIndexBroadcaster.getIntervalTicks())), false);
+        for (ServerPlayer player : source.getServer().getPlayerList().getPlayers()) {
+            int pending = TerraformUpdatePacer.pending(player);
+            if (pending > 0) {
+                source.sendSuccess(() -> Component.literal(player.getScoreboardName() + ": " + pending + " pending"), false);
+            }
+        }
+        return 1;
+    }
+
+    private static int pregenStatus(CommandSourceStack source) {
+        int running = 0;
+        for (ServerLevel level : source.getServer().getAllLevels()) {
+            PregenState state = TerraformIndexData.get(level).getPregen();
+            if (state == null) {
+                continue;
+            }
+
+            running++;
+            TerraformPregen run = TerraformPregen.forLevel(level);
+            long eta = run.etaSeconds(state);
+            source.sendSuccess(() -> Component.literal(String.format(
+                    "%s: %d/%d chunks (%.1f%%), %d in flight, %s",
+                    level.dimension().location(),
+                    state.getProgress(),
+                    state.getTotal(),
+                    100.0 * state.getProgress() / state.getTotal(),
+                    run.inFlight(),
+                    state.isPaused() ? "paused" : eta < 0 ? "ETA unknown" : "ETA " + formatDuration(eta))), false);
+        }
+        if (running == 0) {
+            source.sendSuccess(() -> Component.literal("No pre-generation running"), false);
+        }
+        return running;
+    }
+
+    private static int pausePregen(CommandSourceStack source, ServerLevel level, boolean paused) {
+        if (TerraformIndexData.get(level).getPregen() == null) {
+            source.sendFailure(Component.literal("No pre-generation running in " + level.dimension().location()));
+            return 0;
+        }
+
+        TerraformPregen.forLevel(level).setPaused(paused);
+        source.sendSuccess(() -> Component.literal(
+                (paused ? "Paused" : "Resumed") + " pre-generation in " + level.dimension().location()), true);
+        return 1;
+    }
+
+    private static int cancelPregen(CommandSourceStack source, ServerLevel level) {
+        if (TerraformIndexData.get(level).getPregen() == null) {
+            source.sendFailure(Component.literal("No pre-generation running in " + level.dimension().location()));
+            return 0;
+        }
+
+        TerraformPregen.forLevel(level).cancel();
+        source.sendSuccess(() -> Component.literal("Cancelled pre-generation in " + level.dimension().location()), true);
+        return 1;
+    }
+
+    private static String formatDuration(long seconds) {
+        if (seconds >= 3600) {
+            return String.format("%dh %dm", seconds / 3600, seconds % 3600 / 60);
+        }
+        return String.format("%dm %ds", seconds / 60, seconds % 60);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
     }
 }
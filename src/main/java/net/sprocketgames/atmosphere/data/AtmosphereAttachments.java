@@ -0,0 +1,30 @@
+package net.sprocketgames.atmosphere.data;
+
+import java.util.function.Supplier;
+
+import net.neoforged.neoforge.attachment.AttachmentType;
+import net.neoforged.neoforge.registries.DeferredRegister;
+import net.neoforged.neoforge.registries.NeoForgeRegistries;
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * Data attachments Atmosphere stores on game objects, such as per-chunk terraform state saved with the chunk.
+ */
+public final class AtmosphereAttachments {
+    public static final DeferredRegister<AttachmentType<?>> ATTACHMENT_TYPES =
+            DeferredRegister.create(NeoForgeRegistries.ATTACHMENT_TYPES, Atmosphere.MOD_ID);
+
+    public static final Supplier<AttachmentType<ChunkWaterSummary>> WATER_SUMMARY = ATTACHMENT_TYPES.register(
+            "water_summary",
+            () -> AttachmentType.builder(ChunkWaterSummary::new).serialize(ChunkWaterSummary.SERIALIZER).build());
+
+    /** Only written once the chunk has been processed, so untouched chunks carry no extra data. */
+    public static final Supplier<AttachmentType<ChunkTerraformState>> TERRAFORM_STATE = ATTACHMENT_TYPES.register(
+            "terraform_state",
+            () -> AttachmentType.builder(ChunkTerraformState::new)
+                    .serialize(ChunkTerraformState.SERIALIZER, ChunkTerraformState::isProcessed)
+                    .build());
+
+    private AtmosphereAttachments() {
+    }
+}
@@ -0,0 +1,95 @@
+package net.sprocketgames.atmosphere.data;
+
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.neoforged.neoforge.attachment.IAttachmentHolder;
+import net.neoforged.neoforge.attachment.IAttachmentSerializer;
+
+/**
+ * Per-chunk terraform progress, saved with the chunk instead of in one level-wide map.
+ *
+ * <p>Records the water level the chunk was last processed at and the hydration revision that pass ran under. A
+ * state from an older revision reads as unprocessed but is kept, so {@link HydrationMigrations} can tell what the
+ * chunk missed and bumping the revision needs no level-wide wipe. It also records which surface rule set last ran
+ * over the chunk.
+ */
+public final class ChunkTerraformState {
+    private static final String WATER_LEVEL_KEY = "water_level_y";
+    private static final String REVISION_KEY = "hydration_revision";
+    private static final String SURFACE_REVISION_KEY = "surface_revision";
+
+    public static final IAttachmentSerializer<CompoundTag, ChunkTerraformState> SERIALIZER = new IAttachmentSerializer<>() {
+        @Override
+        public ChunkTerraformState read(IAttachmentHolder holder, CompoundTag tag, HolderLookup.Provider provider) {
+            ChunkTerraformState state = new ChunkTerraformState();
+            if (tag.contains(WATER_LEVEL_KEY)) {
+                state.processedWaterLevel = tag.getInt(WATER_LEVEL_KEY);
+                state.revision = tag.getInt(REVISION_KEY);
+            }
+            state.surfaceRevision = tag.getInt(SURFACE_REVISION_KEY);
+            return state;
+        }
+
+        @Override
+        public CompoundTag write(ChunkTerraformState state, HolderLookup.Provider provider) {
+            CompoundTag tag = new CompoundTag();
+            tag.putInt(WATER_LEVEL_KEY, state.processedWaterLevel);
+            tag.putInt(REVISION_KEY, state.revision);
+            tag.putInt(SURFACE_REVISION_KEY, state.surfaceRevision);
+            return tag;
+        }
+    };
+
+    private int processedWaterLevel = Integer.MIN_VALUE;
+    private int revision;
+    private int surfaceRevision;
+
+    /**
+     * Whether there is anything worth saving.
+     */
+    public boolean isProcessed() {
+        return processedWaterLevel != Integer.MIN_VALUE || surfaceRevision != 0;
+    }
+
+    /**
+     * The water level of the last completed pass, or {@link Integer#MIN_VALUE} if there was none under
+     * {@code currentRevision}.
+     */
+    public int getProcessedWaterLevel(int currentRevision) {
+        return revision == currentRevision ? processedWaterLevel : Integer.MIN_VALUE;
+    }
+
+    /**
+     * The water level of the last completed pass under whichever revision it ran, or {@link Integer#MIN_VALUE}.
+     */
+    public int getRecordedWaterLevel() {
+        return processedWaterLevel;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return whether anything changed
+     */
+    public boolean markProcessed(int waterLevel, int currentRevision) {
+        if (processedWaterLevel == waterLevel && revision == currentRevision) {
+            return false;
+        }
+        processedWaterLevel = waterLevel;
+        revision = currentRevision;
+        return true;
+    }
+
+    /**
+     * The surface rule revision last applied, or 0 if rules never ran over this chunk.
+     */
+    public int getSurfaceRevision() {
+        return surfaceRevision;
+    }
+
+    public void setSurfaceRevision(int surfaceRevision) {
+        this.surfaceRevision = surfaceRevision;
+    }
+}
@@ -0,0 +1,261 @@
+package net.sprocketgames.atmosphere.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.neoforged.neoforge.attachment.IAttachmentHolder;
+import net.neoforged.neoforge.attachment.IAttachmentSerializer;
+
+/**
+ * Conservative per-chunk summary of where water work can possibly be needed, saved with the chunk.
+ *
+ * <p>For every column it keeps the lowest Y that may hold air and the highest Y that may hold water, and per
+ * section whether it may hold air, water or waterlogged blocks. Every value errs on the side of "may": block
+ * changes only ever widen it, and it is only narrowed from what a completed water pass guarantees. A summary that
+ * says "nothing here" can therefore be trusted to skip reading a section or column. A fresh summary claims
+ * nothing, so chunks without one are scanned as before.
+ *
+ * <p>Every write through {@code LevelChunk.setBlockState} widens the summary, whatever its update flags, so
+ * {@code /fill}, structure placement and silent {@code setBlock} calls are covered. Writes that go straight into a
+ * section bypass it: water and surface passes record their own changes, and features of neighbouring chunks placed
+ * during generation are handled by cleanup passes, which scan with {@link #forFullScan()} instead of trusting the
+ * summary. Code that writes sections directly otherwise should replace the chunk's summary with a fresh one.
+ */
+public final class ChunkWaterSummary {
+    private static final String COLUMNS_KEY = "columns";
+    private static final String AIR_KEY = "air_sections";
+    private static final String WATER_KEY = "water_sections";
+    private static final String WATERLOGGED_KEY = "waterlogged_sections";
+    private static final String SECTIONS_KNOWN_KEY = "sections_known";
+    private static final int COLUMNS = 16 * 16;
+
+    public static final IAttachmentSerializer<CompoundTag, ChunkWaterSummary> SERIALIZER = new IAttachmentSerializer<>() {
+        @Override
+        public ChunkWaterSummary read(IAttachmentHolder holder, CompoundTag tag, HolderLookup.Provider provider) {
+            ChunkWaterSummary summary = new ChunkWaterSummary();
+            int[] columns = tag.getIntArray(COLUMNS_KEY);
+            if (columns.length == COLUMNS) {
+                for (int i = 0; i < COLUMNS; i++) {
+                    summary.lowestAir[i] = (short) (columns[i] >> 16);
+                    summary.highestWater[i] = (short) columns[i];
+                }
+                summary.air = BitSet.valueOf(tag.getLongArray(AIR_KEY));
+                summary.water = BitSet.valueOf(tag.getLongArray(WATER_KEY));
+                summary.waterlogged = BitSet.valueOf(tag.getLongArray(WATERLOGGED_KEY));
+                summary.unknownSections = !tag.getBoolean(SECTIONS_KNOWN_KEY);
+            }
+            return summary;
+        }
+
+        @Override
+        public CompoundTag write(ChunkWaterSummary summary, HolderLookup.Provider provider) {
+            CompoundTag tag = new CompoundTag();
+            int[] columns = new int[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) {
+                columns[i] = (summary.lowestAir[i] << 16) | (summary.highestWater[i] & 0xFFFF);
+            }
+            tag.putIntArray(COLUMNS_KEY, columns);
+            tag.putLongArray(AIR_KEY, summary.air.toLongArray());
+            tag.putLongArray(WATER_KEY, summary.water.toLongArray());
+            tag.putLongArray(WATERLOGGED_KEY, summary.waterlogged.toLongArray());
+            tag.putBoolean(SECTIONS_KNOWN_KEY, !summary.unknownSections);
+            return tag;
+        }
+    };
+
+    private final short[] lowestAir = new short[COLUMNS];
+    private final short[] highestWater = new short[COLUMNS];
+    private BitSet air = new BitSet();
+    private BitSet water = new BitSet();
+    private BitSet waterlogged = new BitSet();
+    private boolean unknownSections = true;
+    private int modCount;
+
+    public ChunkWaterSummary() {
+        Arrays.fill(lowestAir, Short.MIN_VALUE);
+        Arrays.fill(highestWater, Short.MAX_VALUE);
+    }
+
+    public static int column(int localX, int localZ) {
+        return (localX << 4) | localZ;
+    }
+
+    public boolean mayHaveAir(int sectionIndex) {
+        return unknownSections || air.get(sectionIndex);
+    }
+
+    public boolean mayHaveWater(int sectionIndex) {
+        return unknownSections || water.get(sectionIndex);
+    }
+
+    public boolean mayHaveWaterlogged(int sectionIndex) {
+        return unknownSections || waterlogged.get(sectionIndex);
+    }
+
+    public int lowestAir(int column) {
+        return lowestAir[column];
+    }
+
+    public int highestWater(int column) {
+        return highestWater[column];
+    }
+
+    /**
+     * Whether any position in {@code [fromY, toY]} of the section may be air.
+     */
+    public boolean mayNeedFill(int sectionIndex, int fromY, int toY) {
+        if (fromY > toY || !mayHaveAir(sectionIndex)) {
+            return false;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            if (lowestAir[column] <= toY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether any position in {@code [fromY, toY]} of the section may be water or waterlogged.
+     */
+    public boolean mayNeedDrain(int sectionIndex, int fromY, int toY) {
+        if (fromY > toY) {
+            return false;
+        }
+        if (mayHaveWaterlogged(sectionIndex)) {
+            return true;
+        }
+        if (!mayHaveWater(sectionIndex)) {
+            return false;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            if (highestWater[column] >= fromY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies of the column bounds for use off-thread.
+     */
+    public int[] lowestAirSnapshot() {
+        int[] copy = new int[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            copy[i] = lowestAir[i];
+        }
+        return copy;
+    }
+
+    public int[] highestWaterSnapshot() {
+        int[] copy = new int[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            copy[i] = highestWater[i];
+        }
+        return copy;
+    }
+
+    /**
+     * A summary that claims nothing, for a pass that must read every section, carrying this summary's
+     * {@link #modCount()} so the pass can still narrow this one afterwards.
+     */
+    public ChunkWaterSummary forFullScan() {
+        ChunkWaterSummary unknown = new ChunkWaterSummary();
+        unknown.modCount = modCount;
+        return unknown;
+    }
+
+    /**
+     * Incremented whenever the summary is widened. A pass only narrows the summary if nothing widened it since the
+     * pass captured the chunk.
+     */
+    public int modCount() {
+        return modCount;
+    }
+
+    /**
+     * Something changed at this position outside a water pass; it may now be anything.
+     */
+    public void widen(int sectionIndex, int column, int y) {
+        if (!unknownSections) {
+            air.set(sectionIndex);
+            water.set(sectionIndex);
+            waterlogged.set(sectionIndex);
+        }
+        lowestAir[column] = (short) Math.min(lowestAir[column], y);
+        highestWater[column] = (short) Math.max(highestWater[column], y);
+        modCount++;
+    }
+
+    public void recordWater(int sectionIndex, int column, int y) {
+        water.set(sectionIndex);
+        highestWater[column] = (short) Math.max(highestWater[column], y);
+    }
+
+    public void recordAir(int sectionIndex, int column, int y) {
+        air.set(sectionIndex);
+        lowestAir[column] = (short) Math.min(lowestAir[column], y);
+    }
+
+    public void recordSectionWater(int sectionIndex, int sectionMaxY) {
+        water.set(sectionIndex);
+        for (int column = 0; column < COLUMNS; column++) {
+            highestWater[column] = (short) Math.max(highestWater[column], sectionMaxY);
+        }
+    }
+
+    public void recordSectionAir(int sectionIndex, int sectionMinY) {
+        air.set(sectionIndex);
+        for (int column = 0; column < COLUMNS; column++) {
+            lowestAir[column] = (short) Math.min(lowestAir[column], sectionMinY);
+        }
+    }
+
+    /**
+     * Narrows the summary with what a completed pass over {@code [minY, maxY]} at {@code waterLevelY} guarantees:
+     * no air is left at or below the water level (when the pass was allowed to fill) and no water or waterlogged
+     * block is left above it.
+     *
+     * @param minSectionY section Y of section index 0 in this chunk
+     */
+    public void narrowAfterPass(int minSectionY, int sectionCount, int minY, int maxY, int waterLevelY, boolean filled) {
+        int fillTop = Math.min(maxY, waterLevelY);
+        int drainBottom = Math.max(minY, waterLevelY + 1);
+        // A pass that reaches the bottom or top of the chunk also covers the open-ended initial bounds.
+        boolean fromBottom = minY <= minSectionY << 4;
+        boolean toTop = maxY >= ((minSectionY + sectionCount) << 4) - 1;
+
+        for (int column = 0; column < COLUMNS; column++) {
+            boolean airInBand = (fromBottom || lowestAir[column] >= minY) && lowestAir[column] <= fillTop;
+            if (filled && minY <= fillTop && airInBand) {
+                lowestAir[column] = (short) (fillTop + 1);
+            }
+            boolean waterInBand = (toTop || highestWater[column] <= maxY) && highestWater[column] >= drainBottom;
+            if (drainBottom <= maxY && waterInBand) {
+                highestWater[column] = (short) (drainBottom - 1);
+            }
+        }
+
+        boolean wasUnknown = unknownSections;
+        for (int index = 0; index < sectionCount; index++) {
+            int sectionMinY = (minSectionY + index) << 4;
+            int sectionMaxY = sectionMinY + 15;
+            boolean insideFill = filled && sectionMinY >= minY && sectionMaxY <= fillTop;
+            boolean insideDrain = sectionMinY >= drainBottom && sectionMaxY <= maxY;
+            if (wasUnknown) {
+                // First narrowing: sections the pass did not cover may still hold anything.
+                air.set(index, !insideFill);
+                water.set(index, !insideDrain);
+                waterlogged.set(index, !insideDrain);
+            } else if (insideFill) {
+                air.clear(index);
+            } else if (insideDrain) {
+                water.clear(index);
+                waterlogged.clear(index);
+            }
+        }
+        unknownSections = false;
+    }
+}
@@ -0,0 +1,46 @@
+package net.sprocketgames.atmosphere.data;
+
+import java.util.List;
+
+import net.minecraft.world.level.chunk.LevelChunk;
+
+/**
+ * What each bump of {@link TerraformIndexData#CURRENT_HYDRATION_REVISION} changed, so chunks processed under an
+ * older revision are only passed over again if one of the revisions they missed could change them.
+ *
+ * <p>Every bump adds a step here. A step's filter should be cheap and conservative: it runs on the server thread as
+ * outdated chunks load and may only answer false when the new revision provably leaves the chunk as it is, for
+ * example because the chunk's {@link ChunkWaterSummary} shows none of the blocks the change is about.
+ */
+public final class HydrationMigrations {
+    private static final List<Step> STEPS = List.of(
+            // Per-chunk hydration state; what earlier revisions recorded is not known well enough to skip anything.
+            new Step(2, (chunk, waterLevel) -> true));
+
+    private HydrationMigrations() {
+    }
+
+    /**
+     * Whether any revision after {@code fromRevision}, up to the current one, could change the chunk. Revisions
+     * from a newer version of the mod are unknown and always count as affected.
+     */
+    public static boolean affects(LevelChunk chunk, int fromRevision, int waterLevel) {
+        if (fromRevision > TerraformIndexData.CURRENT_HYDRATION_REVISION) {
+            return true;
+        }
+        for (Step step : STEPS) {
+            if (step.revision > fromRevision && step.filter.affects(chunk, waterLevel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    public interface Filter {
+        boolean affects(LevelChunk chunk, int waterLevel);
+    }
+
+    private record Step(int revision, Filter filter) {
+    }
+}
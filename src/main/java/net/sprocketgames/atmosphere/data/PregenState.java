@@ -0,0 +1,101 @@
+package net.sprocketgames.atmosphere.data;
+
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * Saved progress of a {@code /terraform pregen} run: a square of chunks around a fixed center, visited ring by ring
+ * from the middle outwards.
+ *
+ * <p>{@code progress} counts the chunks in visiting order that are known to be generated and terraformed. Chunks
+ * past it may already be done; a restart simply visits them again, which finds nothing left to do.
+ */
+public final class PregenState {
+    private static final String CENTER_X_KEY = "center_x";
+    private static final String CENTER_Z_KEY = "center_z";
+    private static final String RADIUS_KEY = "radius";
+    private static final String PROGRESS_KEY = "progress";
+    private static final String PAUSED_KEY = "paused";
+
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private int progress;
+    private boolean paused;
+
+    public PregenState(int centerX, int centerZ, int radius) {
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+    }
+
+    static PregenState load(CompoundTag tag) {
+        PregenState state = new PregenState(tag.getInt(CENTER_X_KEY), tag.getInt(CENTER_Z_KEY), tag.getInt(RADIUS_KEY));
+        state.progress = tag.getInt(PROGRESS_KEY);
+        state.paused = tag.getBoolean(PAUSED_KEY);
+        return state;
+    }
+
+    CompoundTag save() {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt(CENTER_X_KEY, centerX);
+        tag.putInt(CENTER_Z_KEY, centerZ);
+        tag.putInt(RADIUS_KEY, radius);
+        tag.putInt(PROGRESS_KEY, progress);
+        tag.putBoolean(PAUSED_KEY, paused);
+        return tag;
+    }
+
+    PregenState copy() {
+        PregenState copy = new PregenState(centerX, centerZ, radius);
+        copy.progress = progress;
+        copy.paused = paused;
+        return copy;
+    }
+
+    public int getCenterX() {
+        return centerX;
+    }
+
+    public int getCenterZ() {
+        return centerZ;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Number of chunks in the run, {@code (2 * radius + 1)^2}.
+     */
+    public int getTotal() {
+        int side = 2 * radius + 1;
+        return side * side;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return whether the value changed, in which case the owning data must be marked dirty
+     */
+    public boolean setProgress(int progress) {
+        if (this.progress == progress) {
+            return false;
+        }
+        this.progress = progress;
+        return true;
+    }
+
+    public boolean setPaused(boolean paused) {
+        if (this.paused == paused) {
+            return false;
+        }
+        this.paused = paused;
+        return true;
+    }
+}
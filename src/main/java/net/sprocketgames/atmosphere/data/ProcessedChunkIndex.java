@@ -0,0 +1,225 @@
+package net.sprocketgames.atmosphere.data;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Compact chunk-to-water-level table: a short history of distinct water levels plus, per 32x32 chunk region, a
+ * packed array of indices into that history.
+ *
+ * <p>Nearly every chunk shares the same level, so the history stays tiny and an entry needs one or two bits instead
+ * of a hash map slot holding a long key and an int value. Index 0 means "no entry". Entries are packed like vanilla
+ * bit storage, never straddling two longs, and the arrays are widened when the history outgrows the current width.
+ *
+ * <p>{@link #snapshot} shares the region arrays with the copy it returns; the live index clones a region the first
+ * time it writes to it afterwards, so taking a snapshot costs one pass over the region keys.
+ */
+final class ProcessedChunkIndex {
+    private static final String HISTORY_KEY = "level_history";
+    private static final String BITS_KEY = "bits";
+    private static final String REGION_KEYS_KEY = "region_keys";
+    private static final String REGION_DATA_KEY = "region_data";
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int REGION_CHUNKS = 1 << (REGION_SHIFT * 2);
+
+    private final IntArrayList history = new IntArrayList();
+    private final Long2ObjectOpenHashMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+    private final LongOpenHashSet sharedRegions = new LongOpenHashSet();
+    private int bits = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the stored water level, or {@link Integer#MIN_VALUE} if the chunk has no entry
+     */
+    int get(long chunkKey) {
+        long[] region = regions.get(regionKey(chunkKey));
+        if (region == null) {
+            return Integer.MIN_VALUE;
+        }
+        int index = read(region, localIndex(chunkKey), bits);
+        return index == 0 ? Integer.MIN_VALUE : history.getInt(index - 1);
+    }
+
+    void put(long chunkKey, int waterLevel) {
+        int index = history.indexOf(waterLevel) + 1;
+        if (index == 0) {
+            history.add(waterLevel);
+            index = history.size();
+            if (index >= 1 << bits) {
+                widen(bits + 1);
+            }
+        }
+
+        long[] region = writableRegion(regionKey(chunkKey));
+        if (region == null) {
+            region = new long[wordsPerRegion(bits)];
+            regions.put(regionKey(chunkKey), region);
+        }
+        int local = localIndex(chunkKey);
+        if (read(region, local, bits) == 0) {
+            size++;
+        }
+        write(region, local, bits, index);
+    }
+
+    /**
+     * @return the removed water level, or {@link Integer#MIN_VALUE} if the chunk had no entry
+     */
+    int remove(long chunkKey) {
+        long regionKey = regionKey(chunkKey);
+        long[] region = regions.get(regionKey);
+        if (region == null) {
+            return Integer.MIN_VALUE;
+        }
+
+        int local = localIndex(chunkKey);
+        int index = read(region, local, bits);
+        if (index == 0) {
+            return Integer.MIN_VALUE;
+        }
+
+        region = writableRegion(regionKey);
+        write(region, local, bits, 0);
+        size--;
+        if (isZero(region)) {
+            regions.remove(regionKey);
+            sharedRegions.remove(regionKey);
+        }
+        return history.getInt(index - 1);
+    }
+
+    void clear() {
+        history.clear();
+        regions.clear();
+        sharedRegions.clear();
+        bits = 1;
+        size = 0;
+    }
+
+    /**
+     * A read-only copy for saving off-thread. Later writes to this index do not show up in the copy.
+     */
+    ProcessedChunkIndex snapshot() {
+        ProcessedChunkIndex copy = new ProcessedChunkIndex();
+        copy.history.addAll(history);
+        copy.regions.putAll(regions);
+        copy.bits = bits;
+        copy.size = size;
+        sharedRegions.addAll(regions.keySet());
+        return copy;
+    }
+
+    void save(CompoundTag tag) {
+        int words = wordsPerRegion(bits);
+        long[] keys = new long[regions.size()];
+        long[] data = new long[keys.length * words];
+        int region = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : regions.long2ObjectEntrySet()) {
+            keys[region] = entry.getLongKey();
+            System.arraycopy(entry.getValue(), 0, data, region * words, words);
+            region++;
+        }
+        tag.putIntArray(HISTORY_KEY, history.toIntArray());
+        tag.putInt(BITS_KEY, bits);
+        tag.putLongArray(REGION_KEYS_KEY, keys);
+        tag.putLongArray(REGION_DATA_KEY, data);
+    }
+
+    static boolean isSaved(CompoundTag tag) {
+        return tag.contains(HISTORY_KEY);
+    }
+
+    static ProcessedChunkIndex load(CompoundTag tag) {
+        ProcessedChunkIndex index = new ProcessedChunkIndex();
+        index.history.addElements(0, tag.getIntArray(HISTORY_KEY));
+        index.bits = Math.max(1, tag.getInt(BITS_KEY));
+        int words = wordsPerRegion(index.bits);
+        long[] keys = tag.getLongArray(REGION_KEYS_KEY);
+        long[] data = tag.getLongArray(REGION_DATA_KEY);
+        int count = Math.min(keys.length, data.length / words);
+        for (int region = 0; region < count; region++) {
+            long[] regionWords = Arrays.copyOfRange(data, region * words, (region + 1) * words);
+            index.regions.put(keys[region], regionWords);
+            for (int local = 0; local < REGION_CHUNKS; local++) {
+                if (read(regionWords, local, index.bits) != 0) {
+                    index.size++;
+                }
+            }
+        }
+        return index;
+    }
+
+    private long[] writableRegion(long regionKey) {
+        long[] region = regions.get(regionKey);
+        if (region != null && sharedRegions.remove(regionKey)) {
+            region = region.clone();
+            regions.put(regionKey, region);
+        }
+        return region;
+    }
+
+    private void widen(int newBits) {
+        for (Long2ObjectMap.Entry<long[]> entry : regions.long2ObjectEntrySet()) {
+            long[] previous = entry.getValue();
+            long[] widened = new long[wordsPerRegion(newBits)];
+            for (int local = 0; local < REGION_CHUNKS; local++) {
+                write(widened, local, newBits, read(previous, local, bits));
+            }
+            entry.setValue(widened);
+        }
+        bits = newBits;
+        // Every region was just reallocated, so none is shared with a snapshot any more.
+        sharedRegions.clear();
+    }
+
+    private static long regionKey(long chunkKey) {
+        return ChunkPos.asLong(ChunkPos.getX(chunkKey) >> REGION_SHIFT, ChunkPos.getZ(chunkKey) >> REGION_SHIFT);
+    }
+
+    private static int localIndex(long chunkKey) {
+        return ((ChunkPos.getZ(chunkKey) & REGION_MASK) << REGION_SHIFT) | (ChunkPos.getX(chunkKey) & REGION_MASK);
+    }
+
+    private static int wordsPerRegion(int bits) {
+        int perWord = 64 / bits;
+        return (REGION_CHUNKS + perWord - 1) / perWord;
+    }
+
+    private static int read(long[] words, int local, int bits) {
+        int perWord = 64 / bits;
+        int shift = (local % perWord) * bits;
+        return (int) ((words[local / perWord] >>> shift) & ((1L << bits) - 1));
+    }
+
+    private static void write(long[] words, int local, int bits, int value) {
+        int perWord = 64 / bits;
+        int word = local / perWord;
+        int shift = (local % perWord) * bits;
+        long mask = ((1L << bits) - 1) << shift;
+        words[word] = (words[word] & ~mask) | (((long) value << shift) & mask);
+    }
+
+    private static boolean isZero(long[] words) {
+        for (long word : words) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,15 +1,38 @@
 package net.sprocketgames.atmosphere.data;
 
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+
+import net.minecraft.Util;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.saveddata.SavedData;
 import net.sprocketgames.atmosphere.Atmosphere;
+import net.sprocketgames.atmosphere.network.TerraformIndexBroadcaster;
 
 /**
- * Stores the global Terraform Index (Ti) in level saved data so it persists with the world.
+ * Stores the Terraform Index (Ti) and water system state in level saved data so it persists with the world.
+ *
+ * <p>Every level has its own instance holding its water level, whether its water system runs and its processing
+ * bookkeeping. The Terraform Index itself is global and read from the Overworld's instance.
+ *
+ * <p>Per-chunk processing state lives in the {@link ChunkTerraformState} chunk attachment. Worlds saved before that
+ * still carry a level-wide map here; its entries are handed to chunks as they load and only the remainder is
+ * written back, so the file shrinks towards just the global values. That remainder is kept in a
+ * {@link ProcessedChunkIndex}; the original parallel key/level arrays are still read for older saves.
  */
 public class TerraformIndexData extends SavedData {
     private static final String DATA_NAME = Atmosphere.MOD_ID + "_terraform_index";
@@ -18,12 +41,23 @@ public class TerraformIndexData extends SavedData {
     private static final String PROCESSED_CHUNK_KEYS = "processed_chunk_keys";
     private static final String PROCESSED_WATER_LEVELS = "processed_water_levels";
     private static final String HYDRATION_REVISION_KEY = "hydration_revision";
-    private static final int CURRENT_HYDRATION_REVISION = 2;
+    private static final String WATER_SYSTEM_ENABLED_KEY = "water_system_enabled";
+    private static final String PREGEN_KEY = "pregen";
+    public static final int CURRENT_HYDRATION_REVISION = 2;
+
+    private static volatile CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+
+    /** Set from the IO pool when a write fails, so the next save retries it. */
+    private volatile boolean saveFailed;
 
     private long terraformIndex;
     private int waterLevelY = -64;
-    private final Long2IntMap processedWaterLevels = new Long2IntOpenHashMap();
-    private int hydrationRevision = CURRENT_HYDRATION_REVISION;
+    private ProcessedChunkIndex legacyProcessedWaterLevels = new ProcessedChunkIndex();
+    /** Revision the legacy map's entries were processed under; they are handed to chunks with it. */
+    private int legacyRevision = CURRENT_HYDRATION_REVISION;
+    private boolean waterSystemEnabled;
+    /** Pre-generation run in progress, or null. Kept here so a run resumes after a restart. */
+    private PregenState pregen;
 
     private TerraformIndexData() {
         this(0L);
@@ -31,7 +65,6 @@ public class TerraformIndexData extends SavedData {
 
     private TerraformIndexData(long terraformIndex) {
         this.terraformIndex = terraformIndex;
-        this.processedWaterLevels.defaultReturnValue(Integer.MIN_VALUE);
     }
 
     public static TerraformIndexData load(CompoundTag tag, HolderLookup.Provider provider) {
@@ -39,32 +72,103 @@ public class TerraformIndexData extends SavedData {
         if (tag.contains(WATER_LEVEL_KEY)) {
             data.waterLevelY = tag.getInt(WATER_LEVEL_KEY);
         }
-        data.hydrationRevision = tag.getInt(HYDRATION_REVISION_KEY);
-        long[] processedChunkKeys = tag.getLongArray(PROCESSED_CHUNK_KEYS);
-        int[] processedLevels = tag.getIntArray(PROCESSED_WATER_LEVELS);
-        int count = Math.min(processedChunkKeys.length, processedLevels.length);
-        for (int i = 0; i < count; i++) {
-            data.processedWaterLevels.put(processedChunkKeys[i], processedLevels[i]);
+        data.legacyRevision = tag.getInt(HYDRATION_REVISION_KEY);
+        // Saves from before per-level data only ever existed for the Overworld, where the system always ran.
+        data.waterSystemEnabled = !tag.contains(WATER_SYSTEM_ENABLED_KEY) || tag.getBoolean(WATER_SYSTEM_ENABLED_KEY);
+        if (ProcessedChunkIndex.isSaved(tag)) {
+            data.legacyProcessedWaterLevels = ProcessedChunkIndex.load(tag);
+        } else {
+            long[] processedChunkKeys = tag.getLongArray(PROCESSED_CHUNK_KEYS);
+            int[] processedLevels = tag.getIntArray(PROCESSED_WATER_LEVELS);
+            int count = Math.min(processedChunkKeys.length, processedLevels.length);
+            for (int i = 0; i < count; i++) {
+                data.legacyProcessedWaterLevels.put(processedChunkKeys[i], processedLevels[i]);
+            }
+        }
+        if (tag.contains(PREGEN_KEY)) {
+            data.pregen = PregenState.load(tag.getCompound(PREGEN_KEY));
+        }
+        if (data.legacyProcessedWaterLevels.isEmpty()) {
+            data.legacyRevision = CURRENT_HYDRATION_REVISION;
         }
-        data.ensureHydrationRevision();
         return data;
     }
 
+    /**
+     * Replaces the vanilla synchronous write. The server thread only takes a snapshot; encoding, compression and
+     * the file write run on the IO pool, chained so writes land in order. The file is written next to the target
+     * and moved over it, so a crash mid-write leaves the previous save intact. A failed write leaves the data dirty,
+     * so the next save tries again.
+     */
+    @Override
+    public void save(File file, HolderLookup.Provider provider) {
+        if (!isDirty()) {
+            return;
+        }
+
+        TerraformIndexData snapshot = snapshot();
+        setDirty(false);
+        saveFailed = false;
+        pendingSave = pendingSave
+                .thenRunAsync(() -> snapshot.writeFile(file.toPath(), provider), Util.ioPool())
+                .exceptionally(throwable -> {
+                    Atmosphere.LOGGER.error("Could not save terraform index data to {}", file, throwable);
+                    saveFailed = true;
+                    return null;
+                });
+    }
+
+    @Override
+    public boolean isDirty() {
+        return super.isDirty() || saveFailed;
+    }
+
+    /**
+     * Blocks until every queued save has reached disk. Called once the server has stopped.
+     */
+    public static void awaitPendingSaves() {
+        pendingSave.join();
+    }
+
+    private TerraformIndexData snapshot() {
+        TerraformIndexData snapshot = new TerraformIndexData(terraformIndex);
+        snapshot.waterLevelY = waterLevelY;
+        snapshot.legacyRevision = legacyRevision;
+        snapshot.waterSystemEnabled = waterSystemEnabled;
+        snapshot.legacyProcessedWaterLevels = legacyProcessedWaterLevels.snapshot();
+        snapshot.pregen = pregen == null ? null : pregen.copy();
+        return snapshot;
+    }
+
+    private void writeFile(Path target, HolderLookup.Provider provider) {
+        CompoundTag root = new CompoundTag();
+        root.put("data", save(new CompoundTag(), provider));
+        NbtUtils.addCurrentDataVersion(root);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            NbtIo.writeCompressed(root, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
         tag.putLong(VALUE_KEY, terraformIndex);
         tag.putInt(WATER_LEVEL_KEY, waterLevelY);
-        tag.putInt(HYDRATION_REVISION_KEY, hydrationRevision);
-        long[] keys = new long[processedWaterLevels.size()];
-        int[] values = new int[keys.length];
-        int index = 0;
-        for (Long2IntMap.Entry entry : processedWaterLevels.long2IntEntrySet()) {
-            keys[index] = entry.getLongKey();
-            values[index] = entry.getIntValue();
-            index++;
-        }
-        tag.putLongArray(PROCESSED_CHUNK_KEYS, keys);
-        tag.putIntArray(PROCESSED_WATER_LEVELS, values);
+        tag.putInt(HYDRATION_REVISION_KEY, legacyRevision);
+        tag.putBoolean(WATER_SYSTEM_ENABLED_KEY, waterSystemEnabled);
+        if (!legacyProcessedWaterLevels.isEmpty()) {
+            legacyProcessedWaterLevels.save(tag);
+        }
+        if (pregen != null) {
+            tag.put(PREGEN_KEY, pregen.save());
+        }
         return tag;
     }
 
@@ -76,6 +180,7 @@ public class TerraformIndexData extends SavedData {
         if (this.terraformIndex != terraformIndex) {
             this.terraformIndex = terraformIndex;
             setDirty();
+            TerraformIndexBroadcaster.markDirty();
         }
     }
 
@@ -87,30 +192,104 @@ public class TerraformIndexData extends SavedData {
         if (this.waterLevelY != waterLevelY) {
             this.waterLevelY = waterLevelY;
             setDirty();
+            TerraformIndexBroadcaster.markDirty();
         }
     }
 
-    public void ensureHydrationRevision() {
-        if (hydrationRevision != CURRENT_HYDRATION_REVISION) {
-            hydrationRevision = CURRENT_HYDRATION_REVISION;
-            processedWaterLevels.clear();
+    public boolean isWaterSystemEnabled() {
+        return waterSystemEnabled;
+    }
+
+    public void setWaterSystemEnabled(boolean enabled) {
+        if (waterSystemEnabled != enabled) {
+            waterSystemEnabled = enabled;
             setDirty();
+            TerraformIndexBroadcaster.markDirty();
         }
     }
 
-    public boolean isChunkProcessed(long chunkKey, int waterLevel) {
-        return processedWaterLevels.get(chunkKey) == waterLevel;
+    public PregenState getPregen() {
+        return pregen;
     }
 
-    public int getProcessedWaterLevel(long chunkKey) {
-        return processedWaterLevels.get(chunkKey);
+    public void setPregen(PregenState pregen) {
+        this.pregen = pregen;
+        setDirty();
     }
 
-    public void markChunkProcessed(long chunkKey, int waterLevel) {
-        int previous = processedWaterLevels.put(chunkKey, waterLevel);
-        if (previous != waterLevel) {
-            setDirty();
+    public boolean isChunkProcessed(LevelChunk chunk, int waterLevel) {
+        return getProcessedWaterLevel(chunk) == waterLevel;
+    }
+
+    /**
+     * Whether the chunk was processed at this water level, but under an older hydration revision. Such chunks are
+     * already close to right and are brought up to date by the low-priority migration rather than a normal pass.
+     */
+    public boolean isChunkOutdated(LevelChunk chunk, int waterLevel) {
+        if (!chunk.hasData(AtmosphereAttachments.TERRAFORM_STATE)) {
+            return false;
+        }
+        ChunkTerraformState state = chunk.getData(AtmosphereAttachments.TERRAFORM_STATE);
+        return state.getRevision() != CURRENT_HYDRATION_REVISION && state.getRecordedWaterLevel() == waterLevel;
+    }
+
+    /**
+     * Stamps an outdated chunk with the current revision if none of the revisions it missed would change it.
+     *
+     * @return whether the chunk is now up to date without a pass
+     */
+    public boolean migrateIfUnaffected(LevelChunk chunk, int waterLevel) {
+        ChunkTerraformState state = chunk.getData(AtmosphereAttachments.TERRAFORM_STATE);
+        if (HydrationMigrations.affects(chunk, state.getRevision(), waterLevel)) {
+            return false;
+        }
+        markChunkProcessed(chunk, waterLevel);
+        return true;
+    }
+
+    public int getProcessedWaterLevel(LevelChunk chunk) {
+        if (!chunk.hasData(AtmosphereAttachments.TERRAFORM_STATE)) {
+            return Integer.MIN_VALUE;
+        }
+        return chunk.getData(AtmosphereAttachments.TERRAFORM_STATE).getProcessedWaterLevel(CURRENT_HYDRATION_REVISION);
+    }
+
+    public void markChunkProcessed(LevelChunk chunk, int waterLevel) {
+        if (chunk.getData(AtmosphereAttachments.TERRAFORM_STATE).markProcessed(waterLevel, CURRENT_HYDRATION_REVISION)) {
+            chunk.setUnsaved(true);
+        }
+    }
+
+    /**
+     * Moves a loaded chunk's entry from the legacy level-wide map onto the chunk itself.
+     */
+    public void adoptLegacyState(LevelChunk chunk) {
+        if (legacyProcessedWaterLevels.isEmpty()) {
+            return;
         }
+
+        int waterLevel = legacyProcessedWaterLevels.remove(chunk.getPos().toLong());
+        if (waterLevel == Integer.MIN_VALUE) {
+            return;
+        }
+        // The surface system may already have attached state to stamp its revision; only a recorded water level
+        // means the chunk has its own water state.
+        ChunkTerraformState state = chunk.getData(AtmosphereAttachments.TERRAFORM_STATE);
+        if (state.getRecordedWaterLevel() == Integer.MIN_VALUE) {
+            // Keeps the revision the entry was written under, so an outdated entry migrates like any other chunk.
+            state.markProcessed(waterLevel, legacyRevision);
+            chunk.setUnsaved(true);
+        }
+        setDirty();
+    }
+
+    /**
+     * Records a chunk in the legacy level-wide map, as saves from before per-chunk state did. Only game tests use
+     * this, to recreate such a save.
+     */
+    public void recordLegacyState(ChunkPos pos, int waterLevel) {
+        legacyProcessedWaterLevels.put(pos.toLong(), waterLevel);
+        setDirty();
     }
 
     /**
@@ -121,8 +300,19 @@ public class TerraformIndexData extends SavedData {
     }
 
     public static TerraformIndexData get(ServerLevel level) {
-        var overworld = level.getServer().overworld();
-        var factory = new SavedData.Factory<>(TerraformIndexData::new, TerraformIndexData::load);
-        return overworld.getDataStorage().computeIfAbsent(factory, DATA_NAME);
+        boolean overworld = level.dimension() == Level.OVERWORLD;
+        var factory = new SavedData.Factory<>(() -> {
+            TerraformIndexData data = new TerraformIndexData();
+            data.waterSystemEnabled = overworld;
+            return data;
+        }, TerraformIndexData::load);
+        return level.getDataStorage().computeIfAbsent(factory, DATA_NAME);
+    }
+
+    /**
+     * The instance holding the global Terraform Index.
+     */
+    public static TerraformIndexData global(MinecraftServer server) {
+        return get(server.overworld());
     }
 }
@@ -2,12 +2,12 @@ package net.sprocketgames.atmosphere.events;
 
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.world.level.Level;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.neoforged.neoforge.event.entity.player.PlayerEvent;
 import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
 import net.sprocketgames.atmosphere.data.TerraformIndexData;
-import net.sprocketgames.atmosphere.network.AtmosphereNetwork;
+import net.sprocketgames.atmosphere.network.TerraformIndexBroadcaster;
 import net.sprocketgames.atmosphere.world.TerraformSurfaceSystem;
 import net.sprocketgames.atmosphere.world.TerraformWaterSystem;
 
@@ -18,9 +18,7 @@ public class TerraformIndexEvents {
         }
 
         // Sync the latest Terraform Index to the player as soon as they join the server.
-        ServerLevel level = player.serverLevel();
-        long terraformIndex = TerraformIndexData.get(level).getTerraformIndex();
-        AtmosphereNetwork.sendTerraformIndex(player, terraformIndex);
+        TerraformIndexBroadcaster.sendFull(player);
     }
 
     public static void onChunkLoad(ChunkEvent.Load event) {
@@ -28,19 +26,20 @@ public class TerraformIndexEvents {
             return;
         }
 
-        if (serverLevel.dimension() != Level.OVERWORLD) {
-            return;
-        }
-
         if (!(event.getChunk() instanceof LevelChunk levelChunk)) {
             return;
         }
 
-        if (event.isNewChunk()) {
-            TerraformSurfaceSystem.replaceGrassWithDirt(levelChunk, serverLevel);
-        }
+        onChunkLoad(serverLevel, levelChunk, event.isNewChunk());
+    }
+
+    /**
+     * Hands a loaded chunk to the surface and water systems, in that order.
+     */
+    public static void onChunkLoad(ServerLevel level, LevelChunk chunk, boolean newChunk) {
+        TerraformSurfaceSystem.forLevel(level).onChunkLoad(chunk, newChunk);
 
-        TerraformWaterSystem.enqueue(serverLevel, levelChunk.getPos());
+        TerraformWaterSystem.forLevel(level).enqueue(chunk, newChunk);
     }
 
     public static void onChunkUnload(ChunkEvent.Unload event) {
@@ -48,14 +47,16 @@ public class TerraformIndexEvents {
             return;
         }
 
-        if (serverLevel.dimension() != Level.OVERWORLD) {
-            return;
-        }
-
         if (!(event.getChunk() instanceof LevelChunk levelChunk)) {
             return;
         }
 
-        TerraformWaterSystem.unload(serverLevel, levelChunk.getPos());
+        TerraformSurfaceSystem.forLevel(serverLevel).unload(levelChunk.getPos());
+        TerraformWaterSystem.forLevel(serverLevel).unload(levelChunk.getPos());
+    }
+
+    public static void onServerStopped(ServerStoppedEvent event) {
+        // Index data is written off-thread; make sure the final save is on disk before the process exits.
+        TerraformIndexData.awaitPendingSaves();
     }
 }
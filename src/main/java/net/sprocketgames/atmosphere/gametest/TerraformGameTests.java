@@ -0,0 +1,58 @@
+package net.sprocketgames.atmosphere.gametest;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+import net.sprocketgames.atmosphere.Atmosphere;
+import net.sprocketgames.atmosphere.data.AtmosphereAttachments;
+import net.sprocketgames.atmosphere.data.ChunkTerraformState;
+import net.sprocketgames.atmosphere.data.TerraformIndexData;
+import net.sprocketgames.atmosphere.events.TerraformIndexEvents;
+
+/**
+ * Game tests run by {@code gradlew runGameTestServer}. The load scenario reports its numbers in the log and in
+ * {@code atmosphere-loadtest.json} next to the server, so throughput regressions show up between runs.
+ */
+@GameTestHolder(Atmosphere.MOD_ID)
+@PrefixGameTestTemplate(false)
+public final class TerraformGameTests {
+    /** Chunk radius of the grid; the default 4 loads 9x9 chunks. */
+    private static final int LOAD_RADIUS = Integer.getInteger("atmosphere.loadtest.radius", 4);
+
+    private TerraformGameTests() {
+    }
+
+    @GameTest(template = "empty", timeoutTicks = 20 * 60 * 20, batch = "atmosphere_load")
+    public static void waterSweep(GameTestHelper helper) {
+        WaterSweepScenario scenario = new WaterSweepScenario(helper, LOAD_RADIUS);
+        helper.onEachTick(scenario::tick);
+    }
+
+    /**
+     * A chunk saved before per-chunk state, loading through both systems: the surface system attaches state first,
+     * which must not stop the water system from adopting the chunk's legacy entry.
+     */
+    @GameTest(template = "empty")
+    public static void legacyChunkUpgrade(GameTestHelper helper) {
+        ServerLevel level = helper.getLevel();
+        LevelChunk chunk = level.getChunkAt(helper.absolutePos(BlockPos.ZERO));
+        TerraformIndexData data = TerraformIndexData.get(level);
+        int waterLevel = data.getWaterLevelY();
+
+        chunk.removeData(AtmosphereAttachments.TERRAFORM_STATE);
+        data.recordLegacyState(chunk.getPos(), waterLevel);
+        TerraformIndexEvents.onChunkLoad(level, chunk, false);
+
+        helper.assertTrue(chunk.hasData(AtmosphereAttachments.TERRAFORM_STATE), "Chunk has no terraform state");
+        ChunkTerraformState state = chunk.getData(AtmosphereAttachments.TERRAFORM_STATE);
+        helper.assertTrue(state.getSurfaceRevision() != 0, "Surface revision was not stamped");
+        helper.assertTrue(state.getRecordedWaterLevel() == waterLevel,
+                "Legacy water level " + waterLevel + " was not adopted, chunk records " + state.getRecordedWaterLevel());
+        helper.assertTrue(data.isChunkProcessed(chunk, waterLevel), "Upgraded chunk reads as unprocessed");
+        helper.succeed();
+    }
+}
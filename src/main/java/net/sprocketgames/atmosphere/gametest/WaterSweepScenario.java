@@ -0,0 +1,217 @@
+package net.sprocketgames.atmosphere.gametest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.sprocketgames.atmosphere.Atmosphere;
+import net.sprocketgames.atmosphere.data.AtmosphereAttachments;
+import net.sprocketgames.atmosphere.data.ChunkWaterSummary;
+import net.sprocketgames.atmosphere.data.TerraformIndexData;
+import net.sprocketgames.atmosphere.world.TerraformStats;
+import net.sprocketgames.atmosphere.world.TerraformWaterSystem;
+
+/**
+ * End-to-end water sweep over a grid of force-loaded chunks, driven one server tick at a time.
+ *
+ * <p>The game test level is flat, so the grid is first painted with hilly terrain riddled with caves, one chunk
+ * per tick, and left to settle until light and the water queue are idle. The water level is then raised above the
+ * hills and dropped back below them through {@link TerraformIndexData#setWaterLevelY} and
+ * {@link TerraformWaterSystem#requeueLoaded}, the same path as {@code /terraform setWaterLevel}. Each sweep records
+ * ticks and wall time until the queue drains, peak and average server tick time, and the block and light updates
+ * from the level's {@link TerraformStats}. The level's water settings are restored afterwards.
+ */
+final class WaterSweepScenario {
+    private static final int PHASE_PAINT = 0;
+    private static final int PHASE_SETTLE = 1;
+    private static final int PHASE_SWEEP = 2;
+    private static final int PHASE_DONE = 3;
+
+    private static final int BASE_Y = -60;
+    private static final int SURFACE_Y = 64;
+    private static final int SETTLE_TICKS = 20;
+    private static final int[] SWEEP_LEVELS = {100, 40};
+    private static final int PAINT_FLAGS = Block.UPDATE_CLIENTS;
+
+    private final GameTestHelper helper;
+    private final ServerLevel level;
+    private final List<ChunkPos> grid = new ArrayList<>();
+    private final Random random = new Random(0x5745L);
+    private final JsonArray results = new JsonArray();
+    private final int originalWaterLevel;
+    private final boolean originalEnabled;
+    private int phase = PHASE_PAINT;
+    private int painted;
+    private int idleTicks;
+    private int sweep;
+    private int sweepTicks;
+    private long sweepStartNanos;
+    private long peakTickNanos;
+    private long totalTickNanos;
+
+    WaterSweepScenario(GameTestHelper helper, int radius) {
+        this.helper = helper;
+        this.level = helper.getLevel();
+        ChunkPos center = new ChunkPos(helper.absolutePos(BlockPos.ZERO));
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                grid.add(new ChunkPos(center.x + dx, center.z + dz));
+            }
+        }
+
+        TerraformIndexData data = TerraformIndexData.get(level);
+        originalWaterLevel = data.getWaterLevelY();
+        originalEnabled = data.isWaterSystemEnabled();
+        // Hold the water below the painted terrain while it is built.
+        data.setWaterLevelY(BASE_Y - 1);
+        data.setWaterSystemEnabled(true);
+        for (ChunkPos pos : grid) {
+            level.setChunkForced(pos.x, pos.z, true);
+        }
+    }
+
+    void tick() {
+        switch (phase) {
+            case PHASE_PAINT -> paintNextChunk();
+            case PHASE_SETTLE -> settle();
+            case PHASE_SWEEP -> measureSweep();
+            default -> {
+            }
+        }
+    }
+
+    private void paintNextChunk() {
+        ChunkPos pos = grid.get(painted++);
+        BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+        for (int x = pos.getMinBlockX(); x <= pos.getMaxBlockX(); x++) {
+            for (int z = pos.getMinBlockZ(); z <= pos.getMaxBlockZ(); z++) {
+                int height = SURFACE_Y + (int) Math.round(10.0 * Math.sin(x / 13.0) + 8.0 * Math.cos(z / 17.0));
+                for (int y = BASE_Y; y <= height; y++) {
+                    level.setBlock(cursor.set(x, y, z), terrainAt(y, height), PAINT_FLAGS);
+                }
+            }
+        }
+        // Painting widened the water summary at every painted block; a fresh one says the same for less.
+        level.getChunk(pos.x, pos.z).setData(AtmosphereAttachments.WATER_SUMMARY, new ChunkWaterSummary());
+        if (painted == grid.size()) {
+            phase = PHASE_SETTLE;
+        }
+    }
+
+    private BlockState terrainAt(int y, int height) {
+        if (y == height) {
+            return Blocks.GRASS_BLOCK.defaultBlockState();
+        }
+        if (y > height - 4) {
+            return Blocks.DIRT.defaultBlockState();
+        }
+        return y > BASE_Y + 2 && random.nextFloat() < 0.15F ? Blocks.CAVE_AIR.defaultBlockState() : Blocks.STONE.defaultBlockState();
+    }
+
+    private void settle() {
+        if (isIdle() && !level.getChunkSource().getLightEngine().hasLightWork()) {
+            idleTicks++;
+        } else {
+            idleTicks = 0;
+        }
+        if (idleTicks >= SETTLE_TICKS) {
+            startSweep();
+        }
+    }
+
+    private void startSweep() {
+        TerraformWaterSystem system = TerraformWaterSystem.forLevel(level);
+        system.stats().reset();
+        sweepTicks = 0;
+        peakTickNanos = 0L;
+        totalTickNanos = 0L;
+        sweepStartNanos = System.nanoTime();
+        TerraformIndexData.get(level).setWaterLevelY(SWEEP_LEVELS[sweep]);
+        system.requeueLoaded();
+        phase = PHASE_SWEEP;
+    }
+
+    private void measureSweep() {
+        MinecraftServer server = level.getServer();
+        long[] tickTimes = server.getTickTimesNanos();
+        // The current tick's time is only stored once it ends, so sample the one before it.
+        long previousTick = tickTimes[(server.getTickCount() + tickTimes.length - 1) % tickTimes.length];
+        if (sweepTicks > 0) {
+            peakTickNanos = Math.max(peakTickNanos, previousTick);
+            totalTickNanos += previousTick;
+        }
+        sweepTicks++;
+
+        if (sweepTicks == 1 || !isIdle()) {
+            return;
+        }
+
+        recordSweep(System.nanoTime() - sweepStartNanos);
+        sweep++;
+        if (sweep < SWEEP_LEVELS.length) {
+            startSweep();
+        } else {
+            finish();
+        }
+    }
+
+    private void recordSweep(long wallNanos) {
+        TerraformStats stats = TerraformWaterSystem.forLevel(level).stats();
+        int measuredTicks = sweepTicks - 1;
+        JsonObject result = new JsonObject();
+        result.addProperty("water_level", SWEEP_LEVELS[sweep]);
+        result.addProperty("chunks", grid.size());
+        result.addProperty("ticks_to_converge", measuredTicks);
+        result.addProperty("wall_ms", wallNanos / 1_000_000.0);
+        result.addProperty("peak_tick_ms", peakTickNanos / 1_000_000.0);
+        result.addProperty("avg_tick_ms", measuredTicks == 0 ? 0.0 : totalTickNanos / 1_000_000.0 / measuredTicks);
+        result.addProperty("chunk_passes", stats.chunks());
+        result.addProperty("placed", stats.placed());
+        result.addProperty("drained", stats.drained());
+        result.addProperty("unwaterlogged", stats.unwaterlogged());
+        result.addProperty("light_checks", stats.lightChecks());
+        results.add(result);
+        Atmosphere.LOGGER.info("Water sweep to y={} over {} chunks: {}", SWEEP_LEVELS[sweep], grid.size(), result);
+    }
+
+    private void finish() {
+        phase = PHASE_DONE;
+        TerraformIndexData data = TerraformIndexData.get(level);
+        data.setWaterLevelY(originalWaterLevel);
+        data.setWaterSystemEnabled(originalEnabled);
+        for (ChunkPos pos : grid) {
+            level.setChunkForced(pos.x, pos.z, false);
+        }
+
+        JsonObject report = new JsonObject();
+        report.addProperty("radius", (int) Math.sqrt(grid.size()) / 2);
+        report.add("sweeps", results);
+        Path file = level.getServer().getServerDirectory().resolve("atmosphere-loadtest.json");
+        try {
+            Files.writeString(file, new GsonBuilder().setPrettyPrinting().create().toJson(report));
+        } catch (IOException e) {
+            Atmosphere.LOGGER.error("Could not write load test report to {}", file, e);
+        }
+        helper.succeed();
+    }
+
+    private boolean isIdle() {
+        TerraformWaterSystem system = TerraformWaterSystem.forLevel(level);
+        return system.queuedChunks() == 0 && system.analysesInFlight() == 0;
+    }
+}
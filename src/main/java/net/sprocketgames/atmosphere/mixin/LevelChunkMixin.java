@@ -0,0 +1,34 @@
+package net.sprocketgames.atmosphere.mixin;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.sprocketgames.atmosphere.world.TerraformWaterSystem;
+
+/**
+ * Widens the water summary on every block write that goes through the chunk, whatever its update flags. This
+ * covers {@code /fill}, structure placement and writes that skip neighbour notifications, which
+ * {@code BlockEvent.NeighborNotifyEvent} never reports.
+ */
+@Mixin(LevelChunk.class)
+public abstract class LevelChunkMixin {
+    @Shadow
+    @Final
+    Level level;
+
+    @Inject(method = "setBlockState", at = @At("RETURN"))
+    private void atmosphere$widenWaterSummary(BlockPos pos, BlockState state, boolean isMoving, CallbackInfoReturnable<BlockState> cir) {
+        // A null return means the state did not change.
+        if (cir.getReturnValue() != null && !level.isClientSide) {
+            TerraformWaterSystem.onBlockChanged((LevelChunk) (Object) this, pos);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package net.sprocketgames.atmosphere.network;
 
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
 import net.neoforged.fml.loading.FMLEnvironment;
 import net.neoforged.neoforge.network.PacketDistributor;
 import net.neoforged.neoforge.network.event.RegisterPayloadHandlersEvent;
@@ -11,27 +13,68 @@ import net.sprocketgames.atmosphere.Atmosphere;
  * Central place to register and send all Atmosphere network messages.
  */
 public final class AtmosphereNetwork {
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "2";
 
     private AtmosphereNetwork() {
     }
 
     public static void register(RegisterPayloadHandlersEvent event) {
-        PayloadRegistrar registrar = event.registrar(PROTOCOL_VERSION);
+        // Every payload is optional, so clients without the mod can join modded servers and the other way round.
+        // Players without a channel are skipped (index sync) or kept on vanilla updates (water changes).
+        PayloadRegistrar registrar = event.registrar(PROTOCOL_VERSION).optional();
 
         if (FMLEnvironment.dist.isClient()) {
             registrar.playToClient(
                     TerraformIndexSyncPayload.TYPE,
                     TerraformIndexSyncPayload.STREAM_CODEC,
                     ClientPayloadHandlers::handleTerraformIndexSync);
+            registrar.playToClient(
+                    WaterSectionPayload.TYPE,
+                    WaterSectionPayload.STREAM_CODEC,
+                    ClientPayloadHandlers::handleWaterSection);
+            registrar.playToClient(
+                    SectionSnapshotPayload.TYPE,
+                    SectionSnapshotPayload.STREAM_CODEC,
+                    ClientPayloadHandlers::handleSectionSnapshot);
         } else {
-            // Server still registers the payload so it can send it to clients.
+            // Server still registers the payloads so it can send them to clients.
             registrar.playToClient(TerraformIndexSyncPayload.TYPE, TerraformIndexSyncPayload.STREAM_CODEC, (payload, context) -> {
             });
+            registrar.playToClient(WaterSectionPayload.TYPE, WaterSectionPayload.STREAM_CODEC, (payload, context) -> {
+            });
+            registrar.playToClient(SectionSnapshotPayload.TYPE, SectionSnapshotPayload.STREAM_CODEC, (payload, context) -> {
+            });
+        }
+    }
+
+    /**
+     * Whether the player's client has the mod's index sync channel; clients without it have no HUD to feed.
+     */
+    public static boolean canSendTerraformIndex(ServerPlayer player) {
+        return player.connection.hasChannel(TerraformIndexSyncPayload.TYPE);
+    }
+
+    public static void sendTerraformIndex(ServerPlayer player, TerraformIndexSyncPayload payload) {
+        PacketDistributor.sendToPlayer(player, payload);
+    }
+
+    /**
+     * Whether every player tracking the chunk can receive {@link WaterSectionPayload}. Block changes go to all
+     * trackers alike, so a single client without the mod keeps the whole chunk on vanilla updates.
+     */
+    public static boolean canSendWaterSections(ServerLevel level, ChunkPos pos) {
+        for (ServerPlayer player : level.getChunkSource().chunkMap.getPlayers(pos, false)) {
+            if (!player.connection.hasChannel(WaterSectionPayload.TYPE)) {
+                return false;
+            }
         }
+        return true;
     }
 
-    public static void sendTerraformIndex(ServerPlayer player, long terraformIndex) {
-        PacketDistributor.sendToPlayer(player, new TerraformIndexSyncPayload(terraformIndex));
+    /**
+     * Queues the update for every tracking player; {@link TerraformUpdatePacer} decides when each one receives it.
+     */
+    public static void sendWaterSection(ServerLevel level, WaterSectionPayload payload) {
+        TerraformUpdatePacer.queueSection(level, payload);
     }
 }
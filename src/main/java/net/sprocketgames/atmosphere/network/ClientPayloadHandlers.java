@@ -4,6 +4,7 @@ import net.neoforged.api.distmarker.Dist;
 import net.neoforged.api.distmarker.OnlyIn;
 import net.neoforged.neoforge.network.handling.IPayloadContext;
 import net.sprocketgames.atmosphere.client.ClientTerraformIndex;
+import net.sprocketgames.atmosphere.client.ClientWaterSections;
 
 @OnlyIn(Dist.CLIENT)
 public final class ClientPayloadHandlers {
@@ -11,6 +12,14 @@ public final class ClientPayloadHandlers {
     }
 
     public static void handleTerraformIndexSync(TerraformIndexSyncPayload payload, IPayloadContext context) {
-        context.enqueueWork(() -> ClientTerraformIndex.setTerraformIndex(payload.terraformIndex()));
+        context.enqueueWork(() -> ClientTerraformIndex.apply(payload));
+    }
+
+    public static void handleWaterSection(WaterSectionPayload payload, IPayloadContext context) {
+        context.enqueueWork(() -> ClientWaterSections.apply(payload));
+    }
+
+    public static void handleSectionSnapshot(SectionSnapshotPayload payload, IPayloadContext context) {
+        context.enqueueWork(() -> ClientWaterSections.applySnapshot(payload));
     }
 }
@@ -0,0 +1,43 @@
+package net.sprocketgames.atmosphere.network;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * The final block states of one section, in the section's own network encoding. Sent instead of a
+ * {@link WaterSectionPayload} once a section's update has waited or been coalesced with later changes, because a
+ * change rule only holds against the exact client state it was computed for.
+ */
+public record SectionSnapshotPayload(int chunkX, int chunkZ, int sectionY, byte[] states) implements CustomPacketPayload {
+    public static final Type<SectionSnapshotPayload> TYPE = new Type<>(Atmosphere.id("section_snapshot"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SectionSnapshotPayload> STREAM_CODEC = StreamCodec.of(
+            (buffer, payload) -> {
+                buffer.writeInt(payload.chunkX);
+                buffer.writeInt(payload.chunkZ);
+                buffer.writeVarInt(payload.sectionY);
+                buffer.writeByteArray(payload.states);
+            },
+            buffer -> new SectionSnapshotPayload(buffer.readInt(), buffer.readInt(), buffer.readVarInt(), buffer.readByteArray()));
+
+    public static SectionSnapshotPayload of(int chunkX, int chunkZ, int sectionY, LevelChunkSection section) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer(section.getStates().getSerializedSize()));
+        try {
+            section.getStates().write(buffer);
+            byte[] states = new byte[buffer.readableBytes()];
+            buffer.readBytes(states);
+            return new SectionSnapshotPayload(chunkX, chunkZ, sectionY, states);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+}
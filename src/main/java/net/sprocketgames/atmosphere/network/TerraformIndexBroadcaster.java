@@ -0,0 +1,148 @@
+package net.sprocketgames.atmosphere.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+import net.sprocketgames.atmosphere.data.TerraformIndexData;
+import net.sprocketgames.atmosphere.world.SurfaceRuleManager;
+
+/**
+ * Keeps every client's Terraform Index, water level and stage current.
+ *
+ * <p>Changes only mark the broadcaster dirty; at most one {@link TerraformIndexSyncPayload} per player is sent every
+ * {@link #getIntervalTicks()} ticks, however often the values changed in between. Each player is sent only the
+ * fields that differ from what they last received, with the index as a delta. Joining, respawning and changing
+ * dimension send a full update straight away. Players whose client lacks the channel are skipped.
+ *
+ * <p>The state is static, and an integrated server can start several times in one process, so it is reset whenever a
+ * server starts.
+ */
+public final class TerraformIndexBroadcaster {
+    private static final Map<UUID, Sent> SENT = new HashMap<>();
+
+    private static volatile int intervalTicks = 10;
+    private static volatile boolean dirty;
+    private static int lastBroadcastTick;
+    private static int lastRuleGeneration;
+
+    private TerraformIndexBroadcaster() {
+    }
+
+    /**
+     * Schedules a broadcast. Cheap enough to call on every change.
+     */
+    public static void markDirty() {
+        dirty = true;
+    }
+
+    public static int getIntervalTicks() {
+        return intervalTicks;
+    }
+
+    public static void setIntervalTicks(int ticks) {
+        intervalTicks = Math.max(1, ticks);
+    }
+
+    public static void onServerStarting(ServerStartingEvent event) {
+        // Tick counts start over with the new server; the previous server's last broadcast tick would hold back
+        // every broadcast until the new one caught up with it.
+        SENT.clear();
+        dirty = false;
+        lastBroadcastTick = 0;
+        lastRuleGeneration = SurfaceRuleManager.generation();
+    }
+
+    public static void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            // Water level and the water system switch are per dimension.
+            sendFull(player);
+        }
+    }
+
+    public static void onPlayerRespawn(PlayerEvent.PlayerRespawnEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            // Respawning can move the player to another dimension, and recreates their client level either way.
+            sendFull(player);
+        }
+    }
+
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        SENT.remove(event.getEntity().getUUID());
+    }
+
+    public static void onServerTick(ServerTickEvent.Post event) {
+        MinecraftServer server = event.getServer();
+        int generation = SurfaceRuleManager.generation();
+        if (generation != lastRuleGeneration) {
+            // A data pack reload can move stage thresholds.
+            lastRuleGeneration = generation;
+            dirty = true;
+        }
+        if (!dirty || server.getTickCount() - lastBroadcastTick < intervalTicks) {
+            return;
+        }
+
+        dirty = false;
+        lastBroadcastTick = server.getTickCount();
+        long terraformIndex = TerraformIndexData.global(server).getTerraformIndex();
+        int stage = SurfaceRuleManager.stage(terraformIndex);
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (!AtmosphereNetwork.canSendTerraformIndex(player)) {
+                continue;
+            }
+            Sent previous = SENT.get(player.getUUID());
+            if (previous == null) {
+                sendFull(player);
+                continue;
+            }
+
+            TerraformIndexData data = TerraformIndexData.get(player.serverLevel());
+            Sent current = new Sent(terraformIndex, data.isWaterSystemEnabled(), data.getWaterLevelY(), stage);
+            int flags = 0;
+            if (current.terraformIndex != previous.terraformIndex) {
+                flags |= TerraformIndexSyncPayload.INDEX;
+            }
+            if (current.waterEnabled != previous.waterEnabled || current.waterLevelY != previous.waterLevelY) {
+                flags |= TerraformIndexSyncPayload.WATER_LEVEL;
+            }
+            if (current.stage != previous.stage) {
+                flags |= TerraformIndexSyncPayload.STAGE;
+            }
+            if (flags == 0) {
+                continue;
+            }
+            if (current.waterEnabled) {
+                flags |= TerraformIndexSyncPayload.WATER_ENABLED;
+            }
+
+            SENT.put(player.getUUID(), current);
+            AtmosphereNetwork.sendTerraformIndex(player, new TerraformIndexSyncPayload(
+                    flags, current.terraformIndex - previous.terraformIndex, current.waterLevelY, current.stage));
+        }
+    }
+
+    /**
+     * Sends the player the complete current state, replacing whatever their client holds. Does nothing for a client
+     * without the mod.
+     */
+    public static void sendFull(ServerPlayer player) {
+        if (!AtmosphereNetwork.canSendTerraformIndex(player)) {
+            return;
+        }
+        long terraformIndex = TerraformIndexData.global(player.server).getTerraformIndex();
+        TerraformIndexData data = TerraformIndexData.get(player.serverLevel());
+        Sent current = new Sent(terraformIndex, data.isWaterSystemEnabled(), data.getWaterLevelY(), SurfaceRuleManager.stage(terraformIndex));
+        SENT.put(player.getUUID(), current);
+        AtmosphereNetwork.sendTerraformIndex(player, TerraformIndexSyncPayload.full(
+                current.terraformIndex, current.waterEnabled, current.waterLevelY, current.stage));
+    }
+
+    private record Sent(long terraformIndex, boolean waterEnabled, int waterLevelY, int stage) {
+    }
+}
@@ -6,13 +6,66 @@ import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.sprocketgames.atmosphere.Atmosphere;
 
 /**
- * Packet carrying the current Terraform Index (Ti) to clients so the HUD can display it.
+ * Packet carrying the Terraform Index (Ti), the water level of the player's dimension and the terraform stage to
+ * clients so the HUD can display them.
+ *
+ * <p>A {@link #FULL} update replaces the client's state. Otherwise only the fields flagged as changed are present,
+ * and {@code terraformIndex} is the change since the previous update rather than the value itself, so a typical
+ * update is a flag byte and a one- or two-byte varint.
  */
-public record TerraformIndexSyncPayload(long terraformIndex) implements CustomPacketPayload {
+public record TerraformIndexSyncPayload(int flags, long terraformIndex, int waterLevelY, int stage) implements CustomPacketPayload {
+    public static final int FULL = 1;
+    public static final int INDEX = 1 << 1;
+    public static final int WATER_LEVEL = 1 << 2;
+    public static final int STAGE = 1 << 3;
+    /** The player's dimension has the water system enabled; without it, {@code waterLevelY} is meaningless. */
+    public static final int WATER_ENABLED = 1 << 4;
+
     public static final Type<TerraformIndexSyncPayload> TYPE = new Type<>(Atmosphere.id("terraform_index_sync"));
     public static final StreamCodec<RegistryFriendlyByteBuf, TerraformIndexSyncPayload> STREAM_CODEC = StreamCodec.of(
-            (buffer, payload) -> buffer.writeLong(payload.terraformIndex),
-            buffer -> new TerraformIndexSyncPayload(buffer.readLong()));
+            TerraformIndexSyncPayload::write,
+            TerraformIndexSyncPayload::read);
+
+    public static TerraformIndexSyncPayload full(long terraformIndex, boolean waterEnabled, int waterLevelY, int stage) {
+        int flags = FULL | INDEX | WATER_LEVEL | STAGE | (waterEnabled ? WATER_ENABLED : 0);
+        return new TerraformIndexSyncPayload(flags, terraformIndex, waterLevelY, stage);
+    }
+
+    public boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    private static void write(RegistryFriendlyByteBuf buffer, TerraformIndexSyncPayload payload) {
+        buffer.writeByte(payload.flags);
+        if (payload.has(INDEX)) {
+            buffer.writeVarLong(zigZag(payload.terraformIndex));
+        }
+        if (payload.has(WATER_LEVEL)) {
+            buffer.writeVarInt((int) zigZag(payload.waterLevelY));
+        }
+        if (payload.has(STAGE)) {
+            buffer.writeVarInt(payload.stage);
+        }
+    }
+
+    private static TerraformIndexSyncPayload read(RegistryFriendlyByteBuf buffer) {
+        int flags = buffer.readUnsignedByte();
+        long terraformIndex = (flags & INDEX) != 0 ? unZigZag(buffer.readVarLong()) : 0L;
+        int waterLevelY = (flags & WATER_LEVEL) != 0 ? (int) unZigZag(buffer.readVarInt() & 0xFFFFFFFFL) : 0;
+        int stage = (flags & STAGE) != 0 ? buffer.readVarInt() : 0;
+        return new TerraformIndexSyncPayload(flags, terraformIndex, waterLevelY, stage);
+    }
+
+    /**
+     * Maps signed values to unsigned ones so small negative deltas stay short as varints.
+     */
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
 
     @Override
     public Type<? extends CustomPacketPayload> type() {
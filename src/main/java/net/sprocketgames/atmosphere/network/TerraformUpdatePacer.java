@@ -0,0 +1,313 @@
+package net.sprocketgames.atmosphere.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.game.ClientboundLevelChunkWithLightPacket;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.phys.Vec3;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+import net.neoforged.neoforge.network.PacketDistributor;
+
+/**
+ * Paces terraform block updates per player, so a large sweep reaches each client over several ticks instead of as
+ * one burst.
+ *
+ * <p>Updates are queued per player and section. Each tick a player receives at most {@link #getMaxSectionsPerTick()}
+ * sections and {@link #getMaxBytesPerTick()} bytes, nearest first; sections behind the player's view direction
+ * count as twice as far away. At least one update is sent per tick, so a single oversized one cannot stall the queue.
+ *
+ * <p>A {@link WaterSectionPayload} is only valid against the client state it was computed for. It is sent as-is only
+ * if it goes out in the tick it was queued; a section that waited, or was changed again before it was sent, is
+ * sent as a {@link SectionSnapshotPayload} built from the section at send time, so a chunk terraformed several times
+ * before its turn costs one update of its final state. Chunk resends are built at send time the same way and replace
+ * any section updates queued for the chunk. Updates for chunks the player no longer tracks are dropped; the chunk
+ * packet sent when tracking starts again is already current.
+ */
+public final class TerraformUpdatePacer {
+    private static final double BEHIND_VIEW_PENALTY = 4.0;
+    private static final int PAYLOAD_OVERHEAD_BYTES = 16;
+
+    private static final Map<UUID, PlayerQueue> QUEUES = new HashMap<>();
+
+    private static volatile int maxSectionsPerTick = 64;
+    private static volatile int maxBytesPerTick = 64 * 1024;
+
+    private TerraformUpdatePacer() {
+    }
+
+    public static void queueSection(ServerLevel level, WaterSectionPayload payload) {
+        int tick = level.getServer().getTickCount();
+        for (ServerPlayer player : level.getChunkSource().chunkMap.getPlayers(new ChunkPos(payload.chunkX(), payload.chunkZ()), false)) {
+            queueFor(player, level).addSection(payload, tick);
+        }
+    }
+
+    /**
+     * Queues the whole chunk, with light, for every player tracking it.
+     */
+    public static void queueChunk(LevelChunk chunk, ServerLevel level) {
+        for (ServerPlayer player : level.getChunkSource().chunkMap.getPlayers(chunk.getPos(), false)) {
+            queueFor(player, level).addChunk(chunk);
+        }
+    }
+
+    public static void onServerTick(ServerTickEvent.Post event) {
+        MinecraftServer server = event.getServer();
+        if (QUEUES.isEmpty()) {
+            return;
+        }
+
+        int tick = server.getTickCount();
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            PlayerQueue queue = QUEUES.get(player.getUUID());
+            if (queue != null) {
+                queue.flush(player, tick);
+                if (queue.isEmpty()) {
+                    QUEUES.remove(player.getUUID());
+                }
+            }
+        }
+    }
+
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        QUEUES.remove(event.getEntity().getUUID());
+    }
+
+    public static void onServerStopped(ServerStoppedEvent event) {
+        // Queued positions belong to the stopped server's levels; an integrated server may open another world next.
+        QUEUES.clear();
+    }
+
+    /**
+     * Updates waiting for the player, or 0 if none are queued.
+     */
+    public static int pending(ServerPlayer player) {
+        PlayerQueue queue = QUEUES.get(player.getUUID());
+        return queue == null ? 0 : queue.size();
+    }
+
+    public static int getMaxSectionsPerTick() {
+        return maxSectionsPerTick;
+    }
+
+    public static int getMaxBytesPerTick() {
+        return maxBytesPerTick;
+    }
+
+    public static void setMaxSectionsPerTick(int sections) {
+        maxSectionsPerTick = Math.max(1, sections);
+    }
+
+    public static void setMaxBytesPerTick(int bytes) {
+        maxBytesPerTick = Math.max(1, bytes);
+    }
+
+    private static PlayerQueue queueFor(ServerPlayer player, ServerLevel level) {
+        PlayerQueue queue = QUEUES.computeIfAbsent(player.getUUID(), uuid -> new PlayerQueue());
+        if (queue.dimension != level.dimension()) {
+            // The player changed dimension; nothing queued for the old one still applies.
+            queue.clear();
+            queue.dimension = level.dimension();
+        }
+        return queue;
+    }
+
+    private static final class PlayerQueue {
+        private final Long2ObjectLinkedOpenHashMap<Pending> sections = new Long2ObjectLinkedOpenHashMap<>();
+        private final Long2ObjectLinkedOpenHashMap<Pending> chunks = new Long2ObjectLinkedOpenHashMap<>();
+        private final ObjectArrayList<Pending> order = new ObjectArrayList<>();
+        private ResourceKey<Level> dimension;
+
+        void addSection(WaterSectionPayload payload, int tick) {
+            if (chunks.containsKey(ChunkPos.asLong(payload.chunkX(), payload.chunkZ()))) {
+                return;
+            }
+
+            long sectionKey = SectionPos.asLong(payload.chunkX(), payload.sectionY(), payload.chunkZ());
+            Pending pending = sections.get(sectionKey);
+            if (pending != null) {
+                // Changed again before it went out: only the final state is sent.
+                pending.payload = null;
+                return;
+            }
+            sections.put(sectionKey, new Pending(payload.chunkX(), payload.chunkZ(), payload.sectionY(), payload, tick));
+        }
+
+        void addChunk(LevelChunk chunk) {
+            removeChunkSections(chunk);
+            ChunkPos pos = chunk.getPos();
+            chunks.putIfAbsent(pos.toLong(), new Pending(pos.x, pos.z, Pending.WHOLE_CHUNK, null, 0));
+        }
+
+        boolean isEmpty() {
+            return sections.isEmpty() && chunks.isEmpty();
+        }
+
+        int size() {
+            return sections.size() + chunks.size();
+        }
+
+        void clear() {
+            sections.clear();
+            chunks.clear();
+        }
+
+        void flush(ServerPlayer player, int tick) {
+            if (isEmpty()) {
+                return;
+            }
+            if (player.level().dimension() != dimension) {
+                clear();
+                return;
+            }
+
+            ServerLevel level = player.serverLevel();
+            Vec3 eye = player.getEyePosition();
+            Vec3 look = player.getLookAngle();
+            order.clear();
+            for (Pending pending : sections.values()) {
+                pending.score(eye, look);
+                order.add(pending);
+            }
+            for (Pending pending : chunks.values()) {
+                pending.score(eye, look);
+                order.add(pending);
+            }
+            order.unstableSort((a, b) -> Double.compare(a.score, b.score));
+
+            int sectionBudget = maxSectionsPerTick;
+            int byteBudget = maxBytesPerTick;
+            boolean sentAny = false;
+            boolean hasChannel = player.connection.hasChannel(SectionSnapshotPayload.TYPE);
+            for (Pending pending : order) {
+                if (!isQueued(pending)) {
+                    // Covered by a chunk resend earlier in this flush.
+                    continue;
+                }
+                LevelChunk chunk = level.getChunkSource().getChunkNow(pending.chunkX, pending.chunkZ);
+                if (chunk == null || !player.getChunkTrackingView().contains(pending.chunkX, pending.chunkZ)) {
+                    remove(pending);
+                    continue;
+                }
+
+                boolean wholeChunk = pending.isWholeChunk() || !hasChannel;
+                int cost = wholeChunk ? chunk.getSectionsCount() : 1;
+                int bytes = estimateBytes(pending, chunk, wholeChunk, tick);
+                if (sentAny && (cost > sectionBudget || bytes > byteBudget)) {
+                    break;
+                }
+
+                send(player, level, pending, chunk, wholeChunk, tick);
+                remove(pending);
+                if (wholeChunk) {
+                    removeChunkSections(chunk);
+                }
+                sectionBudget -= cost;
+                byteBudget -= bytes;
+                sentAny = true;
+            }
+            order.clear();
+        }
+
+        private void send(ServerPlayer player, ServerLevel level, Pending pending, LevelChunk chunk, boolean wholeChunk, int tick) {
+            if (wholeChunk) {
+                player.connection.send(new ClientboundLevelChunkWithLightPacket(chunk, level.getLightEngine(), null, null));
+            } else if (pending.payload != null && pending.queuedTick == tick) {
+                PacketDistributor.sendToPlayer(player, pending.payload);
+            } else {
+                LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(pending.sectionY));
+                PacketDistributor.sendToPlayer(player, SectionSnapshotPayload.of(pending.chunkX, pending.chunkZ, pending.sectionY, section));
+            }
+        }
+
+        private static int estimateBytes(Pending pending, LevelChunk chunk, boolean wholeChunk, int tick) {
+            if (wholeChunk) {
+                // Block data only; light is not known until the packet is built.
+                int bytes = PAYLOAD_OVERHEAD_BYTES;
+                for (LevelChunkSection section : chunk.getSections()) {
+                    bytes += section.getSerializedSize();
+                }
+                return bytes;
+            }
+            if (pending.payload != null && pending.queuedTick == tick) {
+                return PAYLOAD_OVERHEAD_BYTES + 2 * pending.payload.runs().length;
+            }
+            LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(pending.sectionY));
+            return PAYLOAD_OVERHEAD_BYTES + section.getStates().getSerializedSize();
+        }
+
+        private void remove(Pending pending) {
+            if (pending.isWholeChunk()) {
+                chunks.remove(ChunkPos.asLong(pending.chunkX, pending.chunkZ));
+            } else {
+                sections.remove(SectionPos.asLong(pending.chunkX, pending.sectionY, pending.chunkZ));
+            }
+        }
+
+        private boolean isQueued(Pending pending) {
+            if (pending.isWholeChunk()) {
+                return chunks.get(ChunkPos.asLong(pending.chunkX, pending.chunkZ)) == pending;
+            }
+            return sections.get(SectionPos.asLong(pending.chunkX, pending.sectionY, pending.chunkZ)) == pending;
+        }
+
+        private void removeChunkSections(LevelChunk chunk) {
+            ChunkPos pos = chunk.getPos();
+            for (int sectionY = chunk.getMinSection(); sectionY < chunk.getMaxSection(); sectionY++) {
+                sections.remove(SectionPos.asLong(pos.x, sectionY, pos.z));
+            }
+        }
+    }
+
+    private static final class Pending {
+        static final int WHOLE_CHUNK = Integer.MIN_VALUE;
+
+        final int chunkX;
+        final int chunkZ;
+        final int sectionY;
+        final int queuedTick;
+        /** Change rule to send, or null once the section must be sent as a snapshot. */
+        WaterSectionPayload payload;
+        double score;
+
+        Pending(int chunkX, int chunkZ, int sectionY, WaterSectionPayload payload, int queuedTick) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.sectionY = sectionY;
+            this.payload = payload;
+            this.queuedTick = queuedTick;
+        }
+
+        boolean isWholeChunk() {
+            return sectionY == WHOLE_CHUNK;
+        }
+
+        /**
+         * Squared distance from the player's eyes to the center of the section (or chunk column, at eye height),
+         * scaled up when it lies behind the horizontal view direction.
+         */
+        void score(Vec3 eye, Vec3 look) {
+            double dx = SectionPos.sectionToBlockCoord(chunkX, 8) - eye.x;
+            double dy = isWholeChunk() ? 0.0 : SectionPos.sectionToBlockCoord(sectionY, 8) - eye.y;
+            double dz = SectionPos.sectionToBlockCoord(chunkZ, 8) - eye.z;
+            score = dx * dx + dy * dy + dz * dz;
+            if (dx * look.x + dz * look.z < 0.0) {
+                score *= BEHIND_VIEW_PENALTY;
+            }
+        }
+    }
+}
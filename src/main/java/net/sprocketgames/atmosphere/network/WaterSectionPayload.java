@@ -0,0 +1,134 @@
+package net.sprocketgames.atmosphere.network;
+
+import java.util.function.IntConsumer;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * Water changes to one chunk section, sent to clients with the mod instead of one vanilla block update per position.
+ *
+ * <p>Positions are not sent with their states. The payload carries the water level and the changed positions, and
+ * the client derives each new state from its own copy the same way the server did: at or below the level air fills
+ * with water, above it water drains and waterlogged blocks dry out. Positions are indexed column by column with Y
+ * innermost ({@code x << 8 | z << 4 | y}) and sent as runs, so a flooded column is one run and a whole-section
+ * swap is a single run of 4096.
+ */
+public record WaterSectionPayload(int chunkX, int chunkZ, int sectionY, int waterLevelY, boolean allowFill, int[] runs)
+        implements CustomPacketPayload {
+    public static final int SECTION_VOLUME = 16 * 16 * 16;
+    public static final Type<WaterSectionPayload> TYPE = new Type<>(Atmosphere.id("water_section"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, WaterSectionPayload> STREAM_CODEC = StreamCodec.of(
+            WaterSectionPayload::write,
+            WaterSectionPayload::read);
+
+    /**
+     * Whole section, as after a bulk fill or drain.
+     */
+    public static WaterSectionPayload wholeSection(int chunkX, int chunkZ, int sectionY, int waterLevelY, boolean allowFill) {
+        return new WaterSectionPayload(chunkX, chunkZ, sectionY, waterLevelY, allowFill, new int[] {0, SECTION_VOLUME});
+    }
+
+    /**
+     * Positions whose bits are set in a 4096-bit mask, as start/length pairs.
+     */
+    public static WaterSectionPayload ofMask(int chunkX, int chunkZ, int sectionY, int waterLevelY, boolean allowFill, long[] mask) {
+        IntArrayList runs = new IntArrayList();
+        int index = nextSetBit(mask, 0);
+        while (index >= 0) {
+            int end = nextClearBit(mask, index);
+            runs.add(index);
+            runs.add(end - index);
+            index = nextSetBit(mask, end);
+        }
+        return new WaterSectionPayload(chunkX, chunkZ, sectionY, waterLevelY, allowFill, runs.toIntArray());
+    }
+
+    public void forEachIndex(IntConsumer action) {
+        for (int i = 0; i + 1 < runs.length; i += 2) {
+            int end = Math.min(SECTION_VOLUME, runs[i] + runs[i + 1]);
+            for (int index = Math.max(0, runs[i]); index < end; index++) {
+                action.accept(index);
+            }
+        }
+    }
+
+    private static void write(RegistryFriendlyByteBuf buffer, WaterSectionPayload payload) {
+        buffer.writeInt(payload.chunkX);
+        buffer.writeInt(payload.chunkZ);
+        buffer.writeVarInt(payload.sectionY);
+        buffer.writeVarInt(payload.waterLevelY);
+        buffer.writeBoolean(payload.allowFill);
+        int[] runs = payload.runs;
+        buffer.writeVarInt(runs.length / 2);
+        // Starts are sent as the gap since the previous run ended, which keeps most of them to one byte.
+        int previousEnd = 0;
+        for (int i = 0; i + 1 < runs.length; i += 2) {
+            buffer.writeVarInt(runs[i] - previousEnd);
+            buffer.writeVarInt(runs[i + 1]);
+            previousEnd = runs[i] + runs[i + 1];
+        }
+    }
+
+    private static WaterSectionPayload read(RegistryFriendlyByteBuf buffer) {
+        int chunkX = buffer.readInt();
+        int chunkZ = buffer.readInt();
+        int sectionY = buffer.readVarInt();
+        int waterLevelY = buffer.readVarInt();
+        boolean allowFill = buffer.readBoolean();
+        int count = buffer.readVarInt();
+        if (count < 0 || count > SECTION_VOLUME / 2) {
+            throw new IllegalArgumentException("Invalid water section run count " + count);
+        }
+        int[] runs = new int[count * 2];
+        int previousEnd = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            runs[i] = previousEnd + buffer.readVarInt();
+            runs[i + 1] = buffer.readVarInt();
+            previousEnd = runs[i] + runs[i + 1];
+        }
+        return new WaterSectionPayload(chunkX, chunkZ, sectionY, waterLevelY, allowFill, runs);
+    }
+
+    private static int nextSetBit(long[] mask, int from) {
+        int word = from >> 6;
+        if (word >= mask.length) {
+            return -1;
+        }
+        long bits = mask[word] & (-1L << (from & 63));
+        while (true) {
+            if (bits != 0L) {
+                return (word << 6) | Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == mask.length) {
+                return -1;
+            }
+            bits = mask[word];
+        }
+    }
+
+    private static int nextClearBit(long[] mask, int from) {
+        int word = from >> 6;
+        if (word >= mask.length) {
+            return from;
+        }
+        long bits = ~mask[word] & (-1L << (from & 63));
+        while (true) {
+            if (bits != 0L) {
+                return (word << 6) | Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == mask.length) {
+                return mask.length << 6;
+            }
+            bits = ~mask[word];
+        }
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+}
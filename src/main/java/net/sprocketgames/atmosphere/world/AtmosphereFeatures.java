@@ -0,0 +1,21 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.function.Supplier;
+
+import net.minecraft.core.registries.Registries;
+import net.minecraft.world.level.levelgen.feature.Feature;
+import net.neoforged.neoforge.registries.DeferredRegister;
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * World generation features. The configured and placed features and the biome modifier that adds them live in the
+ * mod's data pack.
+ */
+public final class AtmosphereFeatures {
+    public static final DeferredRegister<Feature<?>> FEATURES = DeferredRegister.create(Registries.FEATURE, Atmosphere.MOD_ID);
+
+    public static final Supplier<TerraformWaterFeature> TERRAFORM_WATER = FEATURES.register("terraform_water", TerraformWaterFeature::new);
+
+    private AtmosphereFeatures() {
+    }
+}
@@ -0,0 +1,131 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Indexed binary min-heap of primitive chunk keys ordered by a long priority.
+ *
+ * <p>Unlike the JDK and fastutil priority queues, every key's heap slot is tracked, so an arbitrary key can be
+ * removed or reprioritized in O(log n). The water queue relies on that for unloads and priority bumps.
+ */
+final class ChunkPriorityHeap {
+    private long[] keys = new long[16];
+    private long[] priorities = new long[16];
+    private final Long2IntOpenHashMap slots = new Long2IntOpenHashMap();
+    private int size;
+
+    ChunkPriorityHeap() {
+        slots.defaultReturnValue(-1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(long key) {
+        return slots.containsKey(key);
+    }
+
+    /**
+     * Inserts the key, or moves it to its new position if it is already queued.
+     */
+    void upsert(long key, long priority) {
+        int slot = slots.get(key);
+        if (slot < 0) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+            }
+            keys[size] = key;
+            priorities[size] = priority;
+            slots.put(key, size);
+            siftUp(size++);
+            return;
+        }
+
+        long previous = priorities[slot];
+        priorities[slot] = priority;
+        if (priority < previous) {
+            siftUp(slot);
+        } else {
+            siftDown(slot);
+        }
+    }
+
+    long popFirst() {
+        long key = keys[0];
+        removeAt(0);
+        return key;
+    }
+
+    boolean remove(long key) {
+        int slot = slots.get(key);
+        if (slot < 0) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+
+    void clear() {
+        slots.clear();
+        size = 0;
+    }
+
+    private void removeAt(int slot) {
+        slots.remove(keys[slot]);
+        size--;
+        if (slot == size) {
+            return;
+        }
+
+        keys[slot] = keys[size];
+        priorities[slot] = priorities[size];
+        slots.put(keys[slot], slot);
+        siftDown(slot);
+        siftUp(slot);
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (priorities[parent] <= priorities[slot]) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int left = (slot << 1) + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && priorities[left + 1] < priorities[left] ? left + 1 : left;
+            if (priorities[slot] <= priorities[smallest]) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        long priority = priorities[a];
+        keys[a] = keys[b];
+        priorities[a] = priorities[b];
+        keys[b] = key;
+        priorities[b] = priority;
+        slots.put(keys[a], a);
+        slots.put(keys[b], b);
+    }
+}
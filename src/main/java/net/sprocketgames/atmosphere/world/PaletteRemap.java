@@ -0,0 +1,87 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.function.UnaryOperator;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Block-for-block substitution applied to a section's palette instead of its 4096 positions.
+ *
+ * <p>The palette is not reachable through public API, so the container is round-tripped through its own network
+ * encoding: bits per entry, the palette as registry ids, then the packed storage. Only the palette ids are rewritten;
+ * the storage is copied through untouched, and the container reads the result back in place. A substitution that
+ * merges two entries leaves a duplicate palette entry, which reads back fine and is dropped on the next resize.
+ *
+ * <p>Sections on the global palette store registry ids in the storage itself and must be rewritten per block.
+ */
+final class PaletteRemap {
+    static final int UNCHANGED = 0;
+    static final int REMAPPED = 1;
+    static final int GLOBAL_PALETTE = 2;
+
+    /** Above this many bits per entry block states use the global palette, see {@code Strategy.SECTION_STATES}. */
+    private static final int MAX_PALETTE_BITS = 8;
+
+    private PaletteRemap() {
+    }
+
+    /**
+     * @param mapping returns the replacement for a state, or the same state to keep it
+     * @return {@link #REMAPPED} if any palette entry changed, {@link #UNCHANGED} if none matched, or
+     *         {@link #GLOBAL_PALETTE} if the section needs the per-block fallback
+     */
+    static int remap(LevelChunkSection section, UnaryOperator<BlockState> mapping) {
+        PalettedContainer<BlockState> states = section.getStates();
+        FriendlyByteBuf encoded = new FriendlyByteBuf(Unpooled.buffer());
+        FriendlyByteBuf remapped = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            states.write(encoded);
+            int bits = encoded.readByte();
+            if (bits > MAX_PALETTE_BITS) {
+                return GLOBAL_PALETTE;
+            }
+
+            remapped.writeByte(bits);
+            boolean changed;
+            if (bits == 0) {
+                // Single-value palette: one id and an empty storage.
+                changed = remapId(encoded, remapped, mapping);
+            } else {
+                int size = encoded.readVarInt();
+                remapped.writeVarInt(size);
+                changed = false;
+                for (int i = 0; i < size; i++) {
+                    changed |= remapId(encoded, remapped, mapping);
+                }
+            }
+            if (!changed) {
+                return UNCHANGED;
+            }
+
+            remapped.writeBytes(encoded);
+            states.read(remapped);
+            section.recalcBlockCounts();
+            return REMAPPED;
+        } finally {
+            encoded.release();
+            remapped.release();
+        }
+    }
+
+    private static boolean remapId(FriendlyByteBuf in, FriendlyByteBuf out, UnaryOperator<BlockState> mapping) {
+        int id = in.readVarInt();
+        BlockState state = Block.BLOCK_STATE_REGISTRY.byId(id);
+        BlockState replacement = state == null ? null : mapping.apply(state);
+        if (replacement == null || replacement == state) {
+            out.writeVarInt(id);
+            return false;
+        }
+        out.writeVarInt(Block.getId(replacement));
+        return true;
+    }
+}
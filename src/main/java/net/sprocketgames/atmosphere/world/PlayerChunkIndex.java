@@ -0,0 +1,220 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Chunk positions of the players in one level, updated only when a player crosses a chunk boundary.
+ *
+ * <p>Players are bucketed into square cells of {@link #CELL_SIZE} chunks, so the distance to the nearest player
+ * only looks at the cells around a chunk instead of at every player.
+ *
+ * <p>Each player also carries a velocity, measured between chunk crossings and smoothed, so the chunks prioritized
+ * around them can stretch ahead along their direction of travel. A walking player keeps roughly the plain square
+ * around them; a player on an elytra or a boat on ice gets a corridor up to {@link #MAX_LEAD_CHUNKS} chunks long.
+ */
+final class PlayerChunkIndex {
+    private static final int CELL_SHIFT = 3;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    /** Rings of cells searched before falling back to a scan of every player. */
+    private static final int MAX_CELL_RINGS = 16;
+    /** How far ahead the corridor reaches, in ticks of travel at the player's current speed. */
+    private static final int LOOKAHEAD_TICKS = 100;
+    private static final int MAX_LEAD_CHUNKS = 12;
+    /** Chunk jumps longer than this between crossings are teleports, not travel. */
+    private static final int TELEPORT_CHUNKS = 8;
+    private static final double VELOCITY_SMOOTHING = 0.5;
+
+    private final Map<UUID, Tracked> players = new HashMap<>();
+    private final Long2ObjectOpenHashMap<LongArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private final LongOpenHashSet corridor = new LongOpenHashSet();
+
+    boolean isEmpty() {
+        return players.isEmpty();
+    }
+
+    /**
+     * Records the player's current chunk.
+     *
+     * @return whether the player is new or entered a different chunk since the last call
+     */
+    boolean move(ServerPlayer player, long tick) {
+        long chunkKey = player.chunkPosition().toLong();
+        Tracked tracked = players.get(player.getUUID());
+        if (tracked == null) {
+            players.put(player.getUUID(), new Tracked(chunkKey, player.getX(), player.getZ(), tick));
+            addToCell(chunkKey);
+            return true;
+        }
+        if (tracked.chunkKey == chunkKey) {
+            return false;
+        }
+
+        removeFromCell(tracked.chunkKey);
+        addToCell(chunkKey);
+        long elapsed = Math.max(1L, tick - tracked.tick);
+        int jumpX = Math.abs(ChunkPos.getX(chunkKey) - ChunkPos.getX(tracked.chunkKey));
+        int jumpZ = Math.abs(ChunkPos.getZ(chunkKey) - ChunkPos.getZ(tracked.chunkKey));
+        if (Math.max(jumpX, jumpZ) > TELEPORT_CHUNKS) {
+            tracked.velocityX = 0.0;
+            tracked.velocityZ = 0.0;
+        } else {
+            tracked.velocityX = smooth(tracked.velocityX, (player.getX() - tracked.x) / elapsed);
+            tracked.velocityZ = smooth(tracked.velocityZ, (player.getZ() - tracked.z) / elapsed);
+        }
+        tracked.chunkKey = chunkKey;
+        tracked.x = player.getX();
+        tracked.z = player.getZ();
+        tracked.tick = tick;
+        return true;
+    }
+
+    void remove(UUID player) {
+        Tracked tracked = players.remove(player);
+        if (tracked != null) {
+            removeFromCell(tracked.chunkKey);
+        }
+    }
+
+    /**
+     * Visits every player's priority area once per chunk, see {@link #forEachPriorityChunk(UUID, int, LongConsumer)}.
+     */
+    void forEachPriorityChunk(int radius, LongConsumer action) {
+        for (UUID player : players.keySet()) {
+            forEachPriorityChunk(player, radius, action);
+        }
+    }
+
+    /**
+     * Visits the chunks within {@code radius} of the player, and of every point along their direction of travel up
+     * to the look-ahead distance, each once.
+     */
+    void forEachPriorityChunk(UUID player, int radius, LongConsumer action) {
+        Tracked tracked = players.get(player);
+        if (tracked == null) {
+            return;
+        }
+
+        int originX = ChunkPos.getX(tracked.chunkKey);
+        int originZ = ChunkPos.getZ(tracked.chunkKey);
+        double speed = Math.sqrt(tracked.velocityX * tracked.velocityX + tracked.velocityZ * tracked.velocityZ);
+        int lead = (int) Math.min(MAX_LEAD_CHUNKS, Math.ceil(speed * LOOKAHEAD_TICKS / 16.0));
+        double stepX = lead == 0 ? 0.0 : tracked.velocityX / speed;
+        double stepZ = lead == 0 ? 0.0 : tracked.velocityZ / speed;
+
+        corridor.clear();
+        for (int step = 0; step <= lead; step++) {
+            int centerX = originX + (int) Math.round(stepX * step);
+            int centerZ = originZ + (int) Math.round(stepZ * step);
+            for (int dx = -radius; dx <= radius; dx++) {
+                for (int dz = -radius; dz <= radius; dz++) {
+                    long chunkKey = ChunkPos.asLong(centerX + dx, centerZ + dz);
+                    if (corridor.add(chunkKey)) {
+                        action.accept(chunkKey);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Squared chunk distance from the chunk to the nearest player, or {@link Integer#MAX_VALUE} without players.
+     */
+    long nearestDistanceSq(int chunkX, int chunkZ) {
+        if (players.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+
+        int cellX = chunkX >> CELL_SHIFT;
+        int cellZ = chunkZ >> CELL_SHIFT;
+        long nearest = Long.MAX_VALUE;
+        for (int ring = 0; ring <= MAX_CELL_RINGS; ring++) {
+            // Every chunk in this ring is at least (ring - 1) * CELL_SIZE + 1 away along one axis.
+            long closestPossible = ring == 0 ? 0L : (long) (ring - 1) * CELL_SIZE + 1;
+            if (closestPossible * closestPossible > nearest) {
+                return nearest;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dz = -ring; dz <= ring; dz++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) {
+                        continue;
+                    }
+                    LongArrayList cell = cells.get(ChunkPos.asLong(cellX + dx, cellZ + dz));
+                    if (cell != null) {
+                        nearest = Math.min(nearest, nearestIn(cell, chunkX, chunkZ));
+                    }
+                }
+            }
+        }
+        if (nearest != Long.MAX_VALUE) {
+            return nearest;
+        }
+
+        for (Tracked tracked : players.values()) {
+            nearest = Math.min(nearest, distanceSq(tracked.chunkKey, chunkX, chunkZ));
+        }
+        return nearest;
+    }
+
+    private static long nearestIn(LongArrayList cell, int chunkX, int chunkZ) {
+        long nearest = Long.MAX_VALUE;
+        for (int i = 0; i < cell.size(); i++) {
+            nearest = Math.min(nearest, distanceSq(cell.getLong(i), chunkX, chunkZ));
+        }
+        return nearest;
+    }
+
+    private static long distanceSq(long chunkKey, int chunkX, int chunkZ) {
+        long dx = chunkX - ChunkPos.getX(chunkKey);
+        long dz = chunkZ - ChunkPos.getZ(chunkKey);
+        return dx * dx + dz * dz;
+    }
+
+    private static long cellOf(long chunkKey) {
+        return ChunkPos.asLong(ChunkPos.getX(chunkKey) >> CELL_SHIFT, ChunkPos.getZ(chunkKey) >> CELL_SHIFT);
+    }
+
+    private void addToCell(long chunkKey) {
+        cells.computeIfAbsent(cellOf(chunkKey), cell -> new LongArrayList(2)).add(chunkKey);
+    }
+
+    private void removeFromCell(long chunkKey) {
+        long cellKey = cellOf(chunkKey);
+        LongArrayList cell = cells.get(cellKey);
+        if (cell == null) {
+            return;
+        }
+        cell.rem(chunkKey);
+        if (cell.isEmpty()) {
+            cells.remove(cellKey);
+        }
+    }
+
+    private static double smooth(double previous, double sample) {
+        return previous + (sample - previous) * VELOCITY_SMOOTHING;
+    }
+
+    private static final class Tracked {
+        long chunkKey;
+        double x;
+        double z;
+        long tick;
+        double velocityX;
+        double velocityZ;
+
+        Tracked(long chunkKey, double x, double z, long tick) {
+            this.chunkKey = chunkKey;
+            this.x = x;
+            this.z = z;
+            this.tick = tick;
+        }
+    }
+}
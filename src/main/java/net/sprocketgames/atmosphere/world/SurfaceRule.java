@@ -0,0 +1,64 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.List;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.util.StringRepresentable;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * One block substitution loaded from {@code data/<namespace>/terraform_rules/*.json}.
+ *
+ * <p>A rule is active while the Terraform Index lies in {@code [min_index, max_index)}, in the listed dimensions
+ * (all if empty), and applies only below, above or on either side of the level's water line. Replacements keep
+ * every block state property the target block shares with the source. When several active rules match the same
+ * state, the one with the highest priority wins; rules are never chained.
+ */
+public record SurfaceRule(Block from, Block to, long minIndex, long maxIndex, Waterline waterline,
+                          List<ResourceKey<Level>> dimensions, int priority) {
+    public static final Codec<SurfaceRule> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            BuiltInRegistries.BLOCK.byNameCodec().fieldOf("from").forGetter(SurfaceRule::from),
+            BuiltInRegistries.BLOCK.byNameCodec().fieldOf("to").forGetter(SurfaceRule::to),
+            Codec.LONG.optionalFieldOf("min_index", Long.MIN_VALUE).forGetter(SurfaceRule::minIndex),
+            Codec.LONG.optionalFieldOf("max_index", Long.MAX_VALUE).forGetter(SurfaceRule::maxIndex),
+            Waterline.CODEC.optionalFieldOf("waterline", Waterline.ANY).forGetter(SurfaceRule::waterline),
+            ResourceKey.codec(Registries.DIMENSION).listOf().optionalFieldOf("dimensions", List.of()).forGetter(SurfaceRule::dimensions),
+            Codec.INT.optionalFieldOf("priority", 0).forGetter(SurfaceRule::priority)
+    ).apply(instance, SurfaceRule::new));
+
+    public boolean isActive(ResourceKey<Level> dimension, long terraformIndex) {
+        return terraformIndex >= minIndex
+                && terraformIndex < maxIndex
+                && (dimensions.isEmpty() || dimensions.contains(dimension));
+    }
+
+    public BlockState convert(BlockState state) {
+        return to.withPropertiesOf(state);
+    }
+
+    public enum Waterline implements StringRepresentable {
+        ANY("any"),
+        BELOW("below"),
+        ABOVE("above");
+
+        public static final Codec<Waterline> CODEC = StringRepresentable.fromEnum(Waterline::values);
+
+        private final String name;
+
+        Waterline(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getSerializedName() {
+            return name;
+        }
+    }
+}
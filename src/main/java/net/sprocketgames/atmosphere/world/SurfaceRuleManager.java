@@ -0,0 +1,97 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.mojang.serialization.JsonOps;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.neoforged.neoforge.event.AddReloadListenerEvent;
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * Loads {@link SurfaceRule}s from data packs. Every reload bumps {@link #generation()} so compiled tables are
+ * rebuilt; per-chunk rule revisions only change if the reloaded rules differ.
+ */
+public final class SurfaceRuleManager extends SimpleJsonResourceReloadListener {
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final String DIRECTORY = "terraform_rules";
+
+    private static volatile List<SurfaceRule> rules = List.of();
+    private static volatile List<ResourceLocation> ids = List.of();
+    private static volatile int generation;
+
+    private SurfaceRuleManager() {
+        super(GSON, DIRECTORY);
+    }
+
+    public static void onAddReloadListeners(AddReloadListenerEvent event) {
+        event.addListener(new SurfaceRuleManager());
+    }
+
+    /**
+     * Loaded rules, highest priority first and by id within a priority.
+     */
+    public static List<SurfaceRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Id of each rule, in the order of {@link #rules()}.
+     */
+    public static List<ResourceLocation> ids() {
+        return ids;
+    }
+
+    public static int generation() {
+        return generation;
+    }
+
+    /**
+     * Terraform stage reached at the given index: how many distinct rule thresholds ({@code min_index}) it has
+     * passed. 0 until the first rule with a lower bound becomes active.
+     */
+    public static int stage(long terraformIndex) {
+        LongSet passed = new LongOpenHashSet();
+        for (SurfaceRule rule : rules) {
+            if (rule.minIndex() != Long.MIN_VALUE && rule.minIndex() <= terraformIndex) {
+                passed.add(rule.minIndex());
+            }
+        }
+        return passed.size();
+    }
+
+    @Override
+    protected void apply(Map<ResourceLocation, JsonElement> entries, ResourceManager resourceManager, ProfilerFiller profiler) {
+        List<Map.Entry<ResourceLocation, SurfaceRule>> loaded = new ArrayList<>();
+        for (Map.Entry<ResourceLocation, JsonElement> entry : entries.entrySet()) {
+            SurfaceRule.CODEC.parse(JsonOps.INSTANCE, entry.getValue())
+                    .resultOrPartial(error -> Atmosphere.LOGGER.error("Skipping terraform rule {}: {}", entry.getKey(), error))
+                    .ifPresent(rule -> loaded.add(Map.entry(entry.getKey(), rule)));
+        }
+
+        loaded.sort(Comparator.<Map.Entry<ResourceLocation, SurfaceRule>>comparingInt(entry -> -entry.getValue().priority())
+                .thenComparing(Map.Entry::getKey));
+        List<SurfaceRule> sorted = new ArrayList<>(loaded.size());
+        List<ResourceLocation> sortedIds = new ArrayList<>(loaded.size());
+        for (Map.Entry<ResourceLocation, SurfaceRule> entry : loaded) {
+            sorted.add(entry.getValue());
+            sortedIds.add(entry.getKey());
+        }
+
+        ids = List.copyOf(sortedIds);
+        rules = List.copyOf(sorted);
+        generation++;
+        Atmosphere.LOGGER.info("Loaded {} terraform rules", sorted.size());
+    }
+}
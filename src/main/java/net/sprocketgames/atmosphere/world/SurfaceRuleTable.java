@@ -0,0 +1,148 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.LeavesBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.lighting.LightEngine;
+
+/**
+ * The active rules of one level compiled into two lookup tables indexed by block state id, one for positions at or
+ * below the water line and one for positions above it. A lookup is a single array read per block or palette entry.
+ */
+final class SurfaceRuleTable {
+    private final BlockState[] below;
+    private final BlockState[] above;
+    private final boolean empty;
+    private final boolean usesWaterline;
+    private final boolean changesLightOrShape;
+    /**
+     * Identifies the active rule set by content, so it is the same after every restart or reload that loads the same
+     * rules. Chunks stamped with a different revision need another pass.
+     */
+    final int revision;
+
+    private SurfaceRuleTable(BlockState[] below, BlockState[] above, boolean empty, boolean usesWaterline, boolean changesLightOrShape, int revision) {
+        this.below = below;
+        this.above = above;
+        this.empty = empty;
+        this.usesWaterline = usesWaterline;
+        this.changesLightOrShape = changesLightOrShape;
+        this.revision = revision;
+    }
+
+    /**
+     * @param ids the id of each rule, in the same order as {@code rules}
+     */
+    static SurfaceRuleTable compile(List<SurfaceRule> rules, List<ResourceLocation> ids, ResourceKey<Level> dimension, long terraformIndex, int waterLevelY) {
+        int size = Block.BLOCK_STATE_REGISTRY.size();
+        BlockState[] below = new BlockState[size];
+        BlockState[] above = new BlockState[size];
+        boolean empty = true;
+        boolean usesWaterline = false;
+        boolean changesLightOrShape = false;
+        int revision = 17;
+
+        for (int index = 0; index < rules.size(); index++) {
+            SurfaceRule rule = rules.get(index);
+            if (!rule.isActive(dimension, terraformIndex)) {
+                continue;
+            }
+
+            empty = false;
+            usesWaterline |= rule.waterline() != SurfaceRule.Waterline.ANY;
+            revision = 31 * revision + contentHash(ids.get(index), rule);
+            for (BlockState state : rule.from().getStateDefinition().getPossibleStates()) {
+                int id = Block.getId(state);
+                BlockState replacement = rule.convert(state);
+                changesLightOrShape |= changesLightOrShape(state, replacement);
+                if (rule.waterline() != SurfaceRule.Waterline.ABOVE && below[id] == null) {
+                    below[id] = replacement;
+                }
+                if (rule.waterline() != SurfaceRule.Waterline.BELOW && above[id] == null) {
+                    above[id] = replacement;
+                }
+            }
+        }
+
+        if (usesWaterline) {
+            revision = 31 * revision + waterLevelY;
+        }
+        // Zero is what chunks that never had a rule pass carry.
+        return new SurfaceRuleTable(below, above, empty, usesWaterline, changesLightOrShape, revision == 0 ? 1 : revision);
+    }
+
+    /**
+     * Hash of everything that decides what a rule converts. Built from strings and numbers only, whose hash codes
+     * are fixed, so it does not change between runs.
+     */
+    private static int contentHash(ResourceLocation id, SurfaceRule rule) {
+        int hash = id.toString().hashCode();
+        hash = 31 * hash + BuiltInRegistries.BLOCK.getKey(rule.from()).toString().hashCode();
+        hash = 31 * hash + BuiltInRegistries.BLOCK.getKey(rule.to()).toString().hashCode();
+        hash = 31 * hash + Long.hashCode(rule.minIndex());
+        hash = 31 * hash + Long.hashCode(rule.maxIndex());
+        hash = 31 * hash + rule.waterline().getSerializedName().hashCode();
+        return 31 * hash + rule.priority();
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    boolean usesWaterline() {
+        return usesWaterline;
+    }
+
+    /**
+     * Whether any replacement differs from its source in light or in what the heightmaps track, so substitutions
+     * need light checks and heightmap updates rather than a bare palette rewrite.
+     */
+    boolean changesLightOrShape() {
+        return changesLightOrShape;
+    }
+
+    /**
+     * Light emission or opacity differs, or the states disagree on any heightmap predicate: air, motion blocking,
+     * fluid or leaves.
+     */
+    static boolean changesLightOrShape(BlockState from, BlockState to) {
+        return LightEngine.hasDifferentLightProperties(EmptyBlockGetter.INSTANCE, BlockPos.ZERO, from, to)
+                || from.isAir() != to.isAir()
+                || from.blocksMotion() != to.blocksMotion()
+                || from.getFluidState().isEmpty() != to.getFluidState().isEmpty()
+                || from.getBlock() instanceof LeavesBlock != to.getBlock() instanceof LeavesBlock;
+    }
+
+    /**
+     * Whether the replacement can raise light anywhere, by emitting more or letting more through.
+     */
+    static boolean brightens(BlockState from, BlockState to) {
+        return to.getLightEmission() > from.getLightEmission()
+                || to.getLightBlock(EmptyBlockGetter.INSTANCE, BlockPos.ZERO) < from.getLightBlock(EmptyBlockGetter.INSTANCE, BlockPos.ZERO)
+                || to.propagatesSkylightDown(EmptyBlockGetter.INSTANCE, BlockPos.ZERO) && !from.propagatesSkylightDown(EmptyBlockGetter.INSTANCE, BlockPos.ZERO);
+    }
+
+    @Nullable
+    BlockState lookup(BlockState state, boolean aboveWaterline) {
+        BlockState[] table = aboveWaterline ? above : below;
+        return table[Block.getId(state)];
+    }
+
+    /**
+     * Lookup for a section lying entirely on one side of the water line, as a mapping that keeps unmatched states.
+     */
+    BlockState map(BlockState state, boolean aboveWaterline) {
+        BlockState replacement = lookup(state, aboveWaterline);
+        return replacement == null ? state : replacement;
+    }
+}
@@ -0,0 +1,79 @@
+package net.sprocketgames.atmosphere.world;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder events for the water system, so a production server can be profiled with
+ * {@code jcmd <pid> JFR.start} instead of a debugger. Both are cheap no-ops unless a recording enables them.
+ */
+public final class TerraformJfrEvents {
+    private TerraformJfrEvents() {
+    }
+
+    @Name("atmosphere.TerraformTick")
+    @Label("Terraform Tick")
+    @Description("Water system work done by one level in one server tick")
+    @Category({"Atmosphere", "Terraform"})
+    @StackTrace(false)
+    public static final class Tick extends Event {
+        @Label("Dimension")
+        public String dimension;
+
+        @Label("Budget")
+        @Timespan(Timespan.NANOSECONDS)
+        public long budgetNanos;
+
+        @Label("Chunks Handled")
+        public int chunks;
+
+        @Label("Priority Queue Depth")
+        public int priorityDepth;
+
+        @Label("Normal Queue Depth")
+        public int normalDepth;
+
+        @Label("Analyses In Flight")
+        public int analysesInFlight;
+    }
+
+    @Name("atmosphere.TerraformChunkPass")
+    @Label("Terraform Chunk Pass")
+    @Description("One completed water pass over a chunk, which may have spanned several ticks")
+    @Category({"Atmosphere", "Terraform"})
+    @StackTrace(false)
+    public static final class ChunkPass extends Event {
+        @Label("Dimension")
+        public String dimension;
+
+        @Label("Chunk X")
+        public int chunkX;
+
+        @Label("Chunk Z")
+        public int chunkZ;
+
+        @Label("Cleanup Only")
+        public boolean cleanupOnly;
+
+        @Label("Server Thread Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long elapsedNanos;
+
+        @Label("Placed")
+        public int placed;
+
+        @Label("Drained")
+        public int drained;
+
+        @Label("Un-waterlogged")
+        public int unwaterlogged;
+
+        @Label("Light Checks")
+        public int lightChecks;
+    }
+}
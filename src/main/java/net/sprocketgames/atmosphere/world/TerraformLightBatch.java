@@ -0,0 +1,165 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.Int2BooleanMap;
+import it.unimi.dsi.fastutil.ints.Int2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+
+/**
+ * Collects the light-relevant changes of one chunk pass and turns them into a reduced set of light checks once
+ * the pass is done.
+ *
+ * <p>Changes are tracked as vertical runs per column. Sky and block light changes cascade through a run from its
+ * top cell, so one check per run replaces one check per block. Runs that only darken (air turned into water) are
+ * read cell by cell instead: a cell is checked when it holds light that did not come down from the cell above it,
+ * such as sky light at the top of the run or a torch beside its middle, and the rest follows by cascade. A cell
+ * without light passes none on, so a run that holds no light at all, like a flooded cave under solid ground, needs
+ * no check.
+ */
+final class TerraformLightBatch {
+    private static final int NO_RUN = Integer.MIN_VALUE;
+
+    private final LevelChunk chunk;
+    private final int[] runTop = new int[16 * 16];
+    private final int[] runBottom = new int[16 * 16];
+    private final boolean[] runBrightens = new boolean[16 * 16];
+    private final LongArrayList brighteningChecks = new LongArrayList();
+    private final LongArrayList darkeningChecks = new LongArrayList();
+    private final Int2BooleanMap sectionWasEmpty = new Int2BooleanOpenHashMap();
+    private int changedBlocks;
+    private int issuedChecks;
+
+    TerraformLightBatch(LevelChunk chunk) {
+        this.chunk = chunk;
+        Arrays.fill(runTop, NO_RUN);
+    }
+
+    /**
+     * Remembers whether a section was empty before the pass touched it, so the light engine can be told about
+     * sections that flip between empty and non-empty.
+     */
+    void touchSection(int sectionY) {
+        if (!sectionWasEmpty.containsKey(sectionY)) {
+            sectionWasEmpty.put(sectionY, chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY)).hasOnlyAir());
+        }
+    }
+
+    void blockChanged(int localX, int worldY, int localZ, boolean brightens) {
+        extendRun((localX << 4) | localZ, worldY, worldY, brightens);
+    }
+
+    void sectionReplaced(int sectionY, boolean brightens) {
+        int minY = SectionPos.sectionToBlockCoord(sectionY);
+        for (int column = 0; column < runTop.length; column++) {
+            extendRun(column, minY, minY + 15, brightens);
+        }
+    }
+
+    /**
+     * Issues the batched light work for the pass.
+     *
+     * @return the number of block light checks sent to the light engine
+     */
+    int flush(ServerLevel level) {
+        for (int column = 0; column < runTop.length; column++) {
+            closeRun(column);
+        }
+
+        LevelLightEngine lightEngine = level.getChunkSource().getLightEngine();
+        for (Int2BooleanMap.Entry entry : sectionWasEmpty.int2BooleanEntrySet()) {
+            int sectionY = entry.getIntKey();
+            boolean nowEmpty = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY)).hasOnlyAir();
+            if (nowEmpty != entry.getBooleanValue()) {
+                lightEngine.updateSectionStatus(SectionPos.of(chunk.getPos(), sectionY), nowEmpty);
+            }
+        }
+
+        BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < brighteningChecks.size(); i++) {
+            lightEngine.checkBlock(cursor.set(brighteningChecks.getLong(i)));
+            issuedChecks++;
+        }
+        for (int i = 0; i < darkeningChecks.size(); i += 2) {
+            checkDarkeningRun(lightEngine, cursor, darkeningChecks.getLong(i), darkeningChecks.getLong(i + 1));
+        }
+
+        brighteningChecks.clear();
+        darkeningChecks.clear();
+        sectionWasEmpty.clear();
+        return issuedChecks;
+    }
+
+    /**
+     * Number of blocks changed in the pass, which is how many light checks the per-block path used to issue.
+     */
+    int changedBlocks() {
+        return changedBlocks;
+    }
+
+    int issuedChecks() {
+        return issuedChecks;
+    }
+
+    private void extendRun(int column, int fromY, int toY, boolean brightens) {
+        changedBlocks += toY - fromY + 1;
+        if (runTop[column] != NO_RUN && fromY == runTop[column] + 1) {
+            runTop[column] = toY;
+            runBrightens[column] |= brightens;
+            return;
+        }
+
+        closeRun(column);
+        runTop[column] = toY;
+        runBottom[column] = fromY;
+        runBrightens[column] = brightens;
+    }
+
+    private void closeRun(int column) {
+        if (runTop[column] == NO_RUN) {
+            return;
+        }
+
+        int worldX = chunk.getPos().getMinBlockX() + (column >> 4);
+        int worldZ = chunk.getPos().getMinBlockZ() + (column & 15);
+        long top = BlockPos.asLong(worldX, runTop[column], worldZ);
+        if (runBrightens[column]) {
+            brighteningChecks.add(top);
+        } else {
+            darkeningChecks.add(top);
+            darkeningChecks.add(BlockPos.asLong(worldX, runBottom[column], worldZ));
+        }
+        runTop[column] = NO_RUN;
+    }
+
+    /**
+     * Checks each cell of the run whose current light is not explained by the cell above it. Sky light passes
+     * straight down without loss or fades by one per block, block light always fades by one, so anything brighter
+     * than that entered from the side or is the top of the run.
+     */
+    private void checkDarkeningRun(LevelLightEngine lightEngine, BlockPos.MutableBlockPos cursor, long top, long bottom) {
+        int x = BlockPos.getX(top);
+        int z = BlockPos.getZ(top);
+        int topY = BlockPos.getY(top);
+        int aboveSky = 0;
+        int aboveBlock = 0;
+        for (int y = topY; y >= BlockPos.getY(bottom); y--) {
+            cursor.set(x, y, z);
+            int sky = lightEngine.getLayerListener(LightLayer.SKY).getLightValue(cursor);
+            int block = lightEngine.getLayerListener(LightLayer.BLOCK).getLightValue(cursor);
+            boolean fromAbove = y != topY && sky <= aboveSky && (block == 0 || block < aboveBlock);
+            if ((sky > 0 || block > 0) && !fromAbove) {
+                lightEngine.checkBlock(cursor);
+                issuedChecks++;
+            }
+            aboveSky = sky;
+            aboveBlock = block;
+        }
+    }
+}
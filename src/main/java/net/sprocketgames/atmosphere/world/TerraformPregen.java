@@ -0,0 +1,231 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.neoforged.neoforge.event.level.LevelEvent;
+import net.neoforged.neoforge.event.tick.LevelTickEvent;
+import net.sprocketgames.atmosphere.Atmosphere;
+import net.sprocketgames.atmosphere.data.PregenState;
+import net.sprocketgames.atmosphere.data.TerraformIndexData;
+
+/**
+ * Generates and terraforms a square of chunks ahead of time, so the work happens off-peak instead of while
+ * players explore.
+ *
+ * <p>Chunks are requested through a load ticket and generate on the vanilla worker threads like any other chunk.
+ * Generation applies the water level and surface rules; the ticket holds the chunk until its water and surface
+ * passes have caught up, then it is released and may unload. At most {@link #MAX_IN_FLIGHT} chunks are held at once,
+ * and no new chunks are requested while the server's average tick time is above the terraform target MSPT, so a
+ * run backs off on its own when players are online and busy.
+ *
+ * <p>Progress lives in the level's {@link TerraformIndexData} and a run resumes from it after a restart.
+ */
+public final class TerraformPregen {
+    private static final TicketType<ChunkPos> TICKET = TicketType.create(Atmosphere.MOD_ID + ":pregen", Comparator.comparingLong(ChunkPos::toLong));
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final Map<ResourceKey<Level>, TerraformPregen> RUNS = new HashMap<>();
+
+    private final ServerLevel level;
+    /** Visiting indices holding a ticket, in ascending order. */
+    private final IntArrayList inFlight = new IntArrayList();
+    private int nextIndex = -1;
+    private int sessionStartProgress = -1;
+    private long sessionStartNanos;
+
+    private TerraformPregen(ServerLevel level) {
+        this.level = level;
+    }
+
+    public static TerraformPregen forLevel(ServerLevel level) {
+        TerraformPregen run = RUNS.get(level.dimension());
+        if (run == null || run.level != level) {
+            run = new TerraformPregen(level);
+            RUNS.put(level.dimension(), run);
+        }
+        return run;
+    }
+
+    public static void onLevelTick(LevelTickEvent.Post event) {
+        if (!(event.getLevel() instanceof ServerLevel serverLevel)) {
+            return;
+        }
+
+        PregenState state = TerraformIndexData.get(serverLevel).getPregen();
+        if (state != null || RUNS.containsKey(serverLevel.dimension())) {
+            forLevel(serverLevel).tick(state);
+        }
+    }
+
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            RUNS.remove(serverLevel.dimension());
+        }
+    }
+
+    /**
+     * Starts a run of {@code radius} chunks around the level's spawn, replacing any run already in progress.
+     */
+    public void start(int radius) {
+        releaseAll();
+        ChunkPos center = new ChunkPos(level.getSharedSpawnPos());
+        TerraformIndexData.get(level).setPregen(new PregenState(center.x, center.z, radius));
+        resetSession();
+    }
+
+    public void setPaused(boolean paused) {
+        TerraformIndexData data = TerraformIndexData.get(level);
+        PregenState state = data.getPregen();
+        if (state != null && state.setPaused(paused)) {
+            data.setDirty();
+            resetSession();
+        }
+    }
+
+    public void cancel() {
+        releaseAll();
+        TerraformIndexData.get(level).setPregen(null);
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Seconds until the run completes at the rate measured since it was started, resumed or the server restarted,
+     * or -1 while there is no rate yet.
+     */
+    public long etaSeconds(PregenState state) {
+        int done = state.getProgress() - sessionStartProgress;
+        if (sessionStartProgress < 0 || done <= 0) {
+            return -1L;
+        }
+        long elapsed = System.nanoTime() - sessionStartNanos;
+        long remaining = state.getTotal() - state.getProgress();
+        return (long) ((double) elapsed / done * remaining / NANOS_PER_SECOND);
+    }
+
+    private void tick(PregenState state) {
+        if (state == null) {
+            releaseAll();
+            RUNS.remove(level.dimension());
+            return;
+        }
+        if (nextIndex < 0) {
+            // First tick of this run since start or restart: pick up where the saved progress left off.
+            nextIndex = state.getProgress();
+        }
+        if (sessionStartProgress < 0) {
+            sessionStartProgress = state.getProgress();
+            sessionStartNanos = System.nanoTime();
+        }
+
+        TerraformIndexData data = TerraformIndexData.get(level);
+        releaseFinished(state, data);
+        if (state.getProgress() >= state.getTotal()) {
+            Atmosphere.LOGGER.info("Pre-generation of {} chunks in {} finished", state.getTotal(), level.dimension().location());
+            cancel();
+            return;
+        }
+        if (state.isPaused()) {
+            releaseAll();
+            return;
+        }
+
+        boolean overloaded = level.getServer().getAverageTickTimeNanos() > TerraformTickBudget.getTargetTickNanos();
+        while (!overloaded && inFlight.size() < MAX_IN_FLIGHT && nextIndex < state.getTotal()) {
+            ChunkPos pos = positionAt(state, nextIndex);
+            level.getChunkSource().addRegionTicket(TICKET, pos, 0, pos);
+            inFlight.add(nextIndex);
+            nextIndex++;
+        }
+    }
+
+    /**
+     * Drops the tickets of chunks whose passes have caught up and advances the saved progress past every leading
+     * chunk that is done.
+     */
+    private void releaseFinished(PregenState state, TerraformIndexData data) {
+        for (int i = inFlight.size() - 1; i >= 0; i--) {
+            int index = inFlight.getInt(i);
+            ChunkPos pos = positionAt(state, index);
+            LevelChunk chunk = level.getChunkSource().getChunkNow(pos.x, pos.z);
+            if (chunk == null || !isTerraformed(chunk, data)) {
+                continue;
+            }
+
+            level.getChunkSource().removeRegionTicket(TICKET, pos, 0, pos);
+            inFlight.removeInt(i);
+        }
+
+        int progress = inFlight.isEmpty() ? nextIndex : inFlight.getInt(0);
+        if (state.setProgress(Math.min(progress, state.getTotal()))) {
+            data.setDirty();
+        }
+    }
+
+    private boolean isTerraformed(LevelChunk chunk, TerraformIndexData data) {
+        // Outdated chunks are left to the migration; holding them here would tie the run to its slow pace.
+        boolean waterDone = !data.isWaterSystemEnabled()
+                || data.isChunkProcessed(chunk, data.getWaterLevelY())
+                || data.isChunkOutdated(chunk, data.getWaterLevelY());
+        return waterDone && TerraformSurfaceSystem.forLevel(level).isCurrent(chunk);
+    }
+
+    private void releaseAll() {
+        PregenState state = TerraformIndexData.get(level).getPregen();
+        if (state != null) {
+            for (int i = 0; i < inFlight.size(); i++) {
+                ChunkPos pos = positionAt(state, inFlight.getInt(i));
+                level.getChunkSource().removeRegionTicket(TICKET, pos, 0, pos);
+            }
+        }
+        inFlight.clear();
+        nextIndex = -1;
+    }
+
+    private void resetSession() {
+        sessionStartProgress = -1;
+    }
+
+    /**
+     * Chunk at a visiting index. Index 0 is the center; ring {@code r} then holds the {@code 8r} chunks at
+     * Chebyshev distance {@code r}, so every ring is finished before the next one starts.
+     */
+    static ChunkPos positionAt(PregenState state, int index) {
+        if (index == 0) {
+            return new ChunkPos(state.getCenterX(), state.getCenterZ());
+        }
+
+        int ring = (int) Math.ceil((Math.sqrt(index + 1.0) - 1.0) / 2.0);
+        int inner = 2 * ring - 1;
+        int offset = index - inner * inner;
+        int side = 2 * ring;
+        int x;
+        int z;
+        if (offset < side) {
+            x = ring;
+            z = -ring + 1 + offset;
+        } else if (offset < 2 * side) {
+            x = ring - 1 - (offset - side);
+            z = ring;
+        } else if (offset < 3 * side) {
+            x = -ring;
+            z = ring - 1 - (offset - 2 * side);
+        } else {
+            x = -ring + 1 + (offset - 3 * side);
+            z = -ring;
+        }
+        return new ChunkPos(state.getCenterX() + x, state.getCenterZ() + z);
+    }
+}
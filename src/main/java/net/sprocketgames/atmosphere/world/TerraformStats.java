@@ -0,0 +1,174 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.Arrays;
+
+/**
+ * Running counters and timing histograms for one level's water system, read by {@code /terraform stats}.
+ *
+ * <p>Only touched from the server thread. Times are bucketed by powers of two of microseconds, so percentiles are
+ * upper bounds accurate to a factor of two; that is enough to tell a 1ms tick from a 10ms one at no cost.
+ */
+public final class TerraformStats {
+    private static final int BUCKETS = 24;
+
+    private final Histogram tickTimes = new Histogram();
+    private final Histogram passTimes = new Histogram();
+    private long chunks;
+    private long placed;
+    private long drained;
+    private long unwaterlogged;
+    private long lightChecks;
+    private long migrated;
+    private long migrationsSkipped;
+    private long sinceNanos = System.nanoTime();
+
+    void recordTick(long nanos) {
+        tickTimes.record(nanos);
+    }
+
+    void recordPass(long nanos, int placed, int drained, int unwaterlogged, int lightChecks) {
+        passTimes.record(nanos);
+        this.chunks++;
+        this.placed += placed;
+        this.drained += drained;
+        this.unwaterlogged += unwaterlogged;
+        this.lightChecks += lightChecks;
+    }
+
+    /**
+     * @param passed whether the outdated chunk needed a pass, or was just stamped with the current revision
+     */
+    void recordMigration(boolean passed) {
+        if (passed) {
+            migrated++;
+        } else {
+            migrationsSkipped++;
+        }
+    }
+
+    public void reset() {
+        tickTimes.clear();
+        passTimes.clear();
+        chunks = 0L;
+        placed = 0L;
+        drained = 0L;
+        unwaterlogged = 0L;
+        lightChecks = 0L;
+        migrated = 0L;
+        migrationsSkipped = 0L;
+        sinceNanos = System.nanoTime();
+    }
+
+    /**
+     * Ticks that had queued work, and the time spent in them.
+     */
+    public Histogram tickTimes() {
+        return tickTimes;
+    }
+
+    /**
+     * Completed chunk passes, and the time each spent on the server thread across all its slices.
+     */
+    public Histogram passTimes() {
+        return passTimes;
+    }
+
+    public long chunks() {
+        return chunks;
+    }
+
+    public long placed() {
+        return placed;
+    }
+
+    /**
+     * Water sources removed above the water line; un-waterlogged blocks are counted separately.
+     */
+    public long drained() {
+        return drained;
+    }
+
+    public long unwaterlogged() {
+        return unwaterlogged;
+    }
+
+    public long lightChecks() {
+        return lightChecks;
+    }
+
+    /**
+     * Outdated chunks brought to the current hydration revision by a pass.
+     */
+    public long migrated() {
+        return migrated;
+    }
+
+    /**
+     * Outdated chunks no missed revision affected, stamped current without a pass.
+     */
+    public long migrationsSkipped() {
+        return migrationsSkipped;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - sinceNanos;
+    }
+
+    public static final class Histogram {
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            long micros = Math.max(0L, nanos / 1_000L);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[bucket]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        void clear() {
+            Arrays.fill(buckets, 0L);
+            count = 0L;
+            totalNanos = 0L;
+            maxNanos = 0L;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long averageNanos() {
+            return count == 0L ? 0L : totalNanos / count;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, capped at the largest value seen.
+         */
+        public long percentileNanos(double percentile) {
+            if (count == 0L) {
+                return 0L;
+            }
+
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0L;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return Math.min(maxNanos, (1L << bucket) * 1_000L);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -1,62 +1,297 @@
 package net.sprocketgames.atmosphere.world;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
-import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.neoforged.neoforge.event.level.LevelEvent;
+import net.neoforged.neoforge.event.tick.LevelTickEvent;
+import net.sprocketgames.atmosphere.data.AtmosphereAttachments;
+import net.sprocketgames.atmosphere.data.ChunkTerraformState;
+import net.sprocketgames.atmosphere.data.TerraformIndexData;
 
 /**
- * Applies surface replacements during world generation (e.g., grass to dirt).
+ * Applies the data-driven {@link SurfaceRule}s of one level (e.g., grass to dirt).
+ *
+ * <p>The rules active at the current Terraform Index are compiled into a {@link SurfaceRuleTable} and applied in a
+ * single pass per chunk. Each chunk is stamped with the table's revision, so when the index crosses a rule
+ * threshold, the water line moves or data packs reload, only chunks carrying an older revision are queued again.
+ * New chunks are converted as they load; everything else is worked off under the level's own tick budget.
+ *
+ * <p>Chunks saved before surface rules existed carry no revision. They were never converted and still are not:
+ * they are stamped with the current revision as they load and only change once the active rules do.
+ *
+ * <p>Substitutions rewrite section palettes through {@link PaletteRemap}; only sections on the global palette, or
+ * sections the water line runs through while a rule depends on it, are visited block by block. A palette rewrite
+ * touches neither heightmaps nor light, so while any active rule changes light or block shape, every section is
+ * visited block by block and the pass updates heightmaps and batches light checks through a
+ * {@link TerraformLightBatch}.
  */
 public final class TerraformSurfaceSystem {
-    private TerraformSurfaceSystem() {
+    private static final Map<ResourceKey<Level>, TerraformSurfaceSystem> SYSTEMS = new HashMap<>();
+
+    private final ServerLevel level;
+    private final LongLinkedOpenHashSet loaded = new LongLinkedOpenHashSet();
+    private final LongLinkedOpenHashSet stale = new LongLinkedOpenHashSet();
+    private final TerraformTickBudget budget = new TerraformTickBudget();
+    private SurfaceRuleTable table;
+    private int tableGeneration;
+    private long tableTerraformIndex;
+    private int tableWaterLevel;
+
+    private TerraformSurfaceSystem(ServerLevel level) {
+        this.level = level;
+    }
+
+    public static TerraformSurfaceSystem forLevel(ServerLevel level) {
+        TerraformSurfaceSystem system = SYSTEMS.get(level.dimension());
+        if (system == null || system.level != level) {
+            system = new TerraformSurfaceSystem(level);
+            SYSTEMS.put(level.dimension(), system);
+        }
+        return system;
+    }
+
+    public static void onLevelTick(LevelTickEvent.Post event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            forLevel(serverLevel).processStale();
+        }
+    }
+
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            SYSTEMS.remove(serverLevel.dimension());
+        }
+    }
+
+    public int queuedChunks() {
+        return stale.size();
+    }
+
+    /**
+     * @param generated whether the chunk was just generated; those are converted straight away, before they are
+     *                  sent, while older chunks with an out-of-date revision wait for the budgeted tick pass
+     */
+    public void onChunkLoad(LevelChunk chunk, boolean generated) {
+        long chunkKey = chunk.getPos().toLong();
+        loaded.add(chunkKey);
+
+        SurfaceRuleTable rules = currentTable();
+        if (generated) {
+            if (needsPass(chunk, rules)) {
+                apply(chunk, rules);
+            } else {
+                stamp(chunk, rules);
+            }
+            return;
+        }
+        if (surfaceRevision(chunk) == 0) {
+            // Saved before surface rules existed, when only new chunks were converted: adopt the current rules as
+            // they are rather than converting every old chunk of the world.
+            stamp(chunk, rules);
+            return;
+        }
+        if (needsPass(chunk, rules)) {
+            stale.add(chunkKey);
+        }
+    }
+
+    /**
+     * Whether the chunk has already been converted under the currently active rules.
+     */
+    public boolean isCurrent(LevelChunk chunk) {
+        return !needsPass(chunk, currentTable());
+    }
+
+    public void unload(ChunkPos pos) {
+        long chunkKey = pos.toLong();
+        loaded.remove(chunkKey);
+        stale.remove(chunkKey);
+    }
+
+    /**
+     * Recompiles the table when the rule set, Terraform Index or water line has changed since the last compile.
+     * A new revision queues every loaded chunk that was stamped with a different one.
+     */
+    private SurfaceRuleTable currentTable() {
+        int generation = SurfaceRuleManager.generation();
+        long terraformIndex = TerraformIndexData.global(level.getServer()).getTerraformIndex();
+        int waterLevel = TerraformIndexData.get(level).getWaterLevelY();
+        if (table != null
+                && tableGeneration == generation
+                && tableTerraformIndex == terraformIndex
+                && (tableWaterLevel == waterLevel || !table.usesWaterline())) {
+            return table;
+        }
+
+        int previousRevision = table == null ? 0 : table.revision;
+        table = SurfaceRuleTable.compile(SurfaceRuleManager.rules(), SurfaceRuleManager.ids(), level.dimension(), terraformIndex, waterLevel);
+        tableGeneration = generation;
+        tableTerraformIndex = terraformIndex;
+        tableWaterLevel = waterLevel;
+
+        if (table.revision != previousRevision && !table.isEmpty()) {
+            for (long chunkKey : loaded) {
+                LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+                if (chunk != null && needsPass(chunk, table)) {
+                    stale.add(chunkKey);
+                }
+            }
+        }
+        return table;
+    }
+
+    private void processStale() {
+        SurfaceRuleTable rules = currentTable();
+        if (stale.isEmpty()) {
+            return;
+        }
+        if (rules.isEmpty()) {
+            stale.clear();
+            return;
+        }
+
+        budget.beginTick(level.getServer(), 1);
+        int processedChunks = 0;
+        while (!stale.isEmpty() && (processedChunks == 0 || budget.hasTimeFor())) {
+            long chunkKey = stale.removeFirstLong();
+            LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+            if (chunk == null || !needsPass(chunk, rules)) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            apply(chunk, rules);
+            budget.recordPass(System.nanoTime() - start);
+            processedChunks++;
+        }
+    }
+
+    private static boolean needsPass(LevelChunk chunk, SurfaceRuleTable rules) {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        return surfaceRevision(chunk) != rules.revision;
+    }
+
+    private static int surfaceRevision(LevelChunk chunk) {
+        return chunk.hasData(AtmosphereAttachments.TERRAFORM_STATE)
+                ? chunk.getData(AtmosphereAttachments.TERRAFORM_STATE).getSurfaceRevision()
+                : 0;
     }
 
-    public static void replaceGrassWithDirt(LevelChunk chunk, ServerLevel level) {
-        int minSection = chunk.getMinSection();
-        int maxSection = chunk.getMaxSection();
-        BlockState dirt = Blocks.DIRT.defaultBlockState();
+    /**
+     * Marks the chunk as current without a pass. Chunks are stamped even while no rule is active, so a chunk that
+     * carries no revision can be told apart as one saved before surface rules existed.
+     */
+    private static void stamp(LevelChunk chunk, SurfaceRuleTable rules) {
+        if (surfaceRevision(chunk) != rules.revision) {
+            chunk.getData(AtmosphereAttachments.TERRAFORM_STATE).setSurfaceRevision(rules.revision);
+            chunk.setUnsaved(true);
+        }
+    }
+
+    /**
+     * One pass over the chunk with every active rule, then stamps the chunk with the table's revision.
+     */
+    private void apply(LevelChunk chunk, SurfaceRuleTable rules) {
+        int waterLevel = tableWaterLevel;
         BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
-        boolean changed = false;
+        boolean remapped = false;
+        TerraformLightBatch light = rules.changesLightOrShape() ? new TerraformLightBatch(chunk) : null;
 
-        for (int sectionY = minSection; sectionY < maxSection; sectionY++) {
+        for (int sectionY = chunk.getMinSection(); sectionY < chunk.getMaxSection(); sectionY++) {
             LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY));
-            if (!section.maybeHas(state -> state.is(Blocks.GRASS_BLOCK))) {
+            int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
+            boolean straddles = rules.usesWaterline() && sectionMinY <= waterLevel && sectionMinY + 15 > waterLevel;
+            boolean above = sectionMinY > waterLevel;
+            if (!section.maybeHas(state -> rules.lookup(state, above) != null || (straddles && rules.lookup(state, true) != null))) {
                 continue;
             }
 
-            int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
-            int worldBaseX = chunk.getPos().getMinBlockX();
-            int worldBaseZ = chunk.getPos().getMinBlockZ();
-            section.acquire();
-            try {
-                for (int y = 0; y < 16; y++) {
-                    int worldY = sectionMinY + y;
-                    for (int x = 0; x < 16; x++) {
-                        int worldX = worldBaseX + x;
-                        for (int z = 0; z < 16; z++) {
-                            BlockState state = section.getBlockState(x, y, z);
-                            if (!state.is(Blocks.GRASS_BLOCK)) {
-                                continue;
-                            }
+            if (!straddles && light == null) {
+                int result = PaletteRemap.remap(section, state -> rules.map(state, above));
+                if (result == PaletteRemap.REMAPPED) {
+                    remapped = true;
+                    continue;
+                }
+                if (result == PaletteRemap.UNCHANGED) {
+                    continue;
+                }
+            }
+
+            // Global palette, the water line splits the section, or light and heightmaps need updating: rewrite
+            // each matching block.
+            applyPerBlock(chunk, section, sectionY, waterLevel, rules, light, cursor);
+        }
+
+        if (light != null) {
+            light.flush(level);
+        }
+
+        if (remapped) {
+            // Remapped sections report no positions; resend the chunk if anyone already has it.
+            TerraformWaterSystem.resendChunk(chunk, level);
+        }
+        ChunkTerraformState state = chunk.getData(AtmosphereAttachments.TERRAFORM_STATE);
+        state.setSurfaceRevision(rules.revision);
+        chunk.setUnsaved(true);
+    }
 
-                            section.setBlockState(x, y, z, dirt, false);
-                            cursor.set(worldX, worldY, worldBaseZ + z);
-                            level.getChunkSource().blockChanged(cursor);
-                            changed = true;
+    /**
+     * @param light batch collecting light checks, or null when no active rule changes light or block shape
+     */
+    private void applyPerBlock(LevelChunk chunk, LevelChunkSection section, int sectionY, int waterLevel, SurfaceRuleTable rules,
+                               @Nullable TerraformLightBatch light, BlockPos.MutableBlockPos cursor) {
+        int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
+        int worldBaseX = chunk.getPos().getMinBlockX();
+        int worldBaseZ = chunk.getPos().getMinBlockZ();
+        section.acquire();
+        try {
+            for (int y = 0; y < 16; y++) {
+                int worldY = sectionMinY + y;
+                boolean above = worldY > waterLevel;
+                for (int x = 0; x < 16; x++) {
+                    int worldX = worldBaseX + x;
+                    for (int z = 0; z < 16; z++) {
+                        BlockState previous = section.getBlockState(x, y, z);
+                        BlockState replacement = rules.lookup(previous, above);
+                        if (replacement == null) {
+                            continue;
                         }
+
+                        boolean reshaped = light != null && SurfaceRuleTable.changesLightOrShape(previous, replacement);
+                        if (reshaped) {
+                            light.touchSection(sectionY);
+                        }
+                        section.setBlockState(x, y, z, replacement, false);
+                        if (reshaped) {
+                            for (Map.Entry<Heightmap.Types, Heightmap> heightmap : chunk.getHeightmaps()) {
+                                heightmap.getValue().update(x, worldY, z, replacement);
+                            }
+                            light.blockChanged(x, worldY, z, SurfaceRuleTable.brightens(previous, replacement));
+                            // Written past LevelChunk.setBlockState, so the water summary is not told otherwise.
+                            TerraformWaterSystem.onBlockChanged(chunk, cursor.set(worldX, worldY, worldBaseZ + z));
+                        }
+                        cursor.set(worldX, worldY, worldBaseZ + z);
+                        level.getChunkSource().blockChanged(cursor);
                     }
                 }
-            } finally {
-                section.release();
             }
-        }
-
-        if (changed) {
-            chunk.setUnsaved(true);
+        } finally {
+            section.release();
         }
     }
 }
@@ -0,0 +1,107 @@
+package net.sprocketgames.atmosphere.world;
+
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Nanosecond work budget for terraform passes that adapts to the server's recent tick times.
+ *
+ * <p>Each tick the budget moves towards a share of the remaining headroom below the target MSPT, clamped between
+ * the configured minimum and maximum. It shrinks faster than it grows so long ticks back off quickly. The cost of
+ * individual chunk passes is tracked as a moving average so a pass is only started if it is expected to fit.
+ *
+ * <p>The minimum, maximum and target are server-wide settings. Each level's water system owns a budget and splits
+ * the headroom and limits evenly with the other levels that have work this tick.
+ */
+public final class TerraformTickBudget {
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final double HEADROOM_SHARE = 0.5;
+    private static final double GROW_RATE = 0.1;
+    private static final double SHRINK_RATE = 0.5;
+    private static final double COST_SMOOTHING = 0.2;
+
+    private static volatile long minBudgetNanos = NANOS_PER_MILLI;
+    private static volatile long maxBudgetNanos = 10 * NANOS_PER_MILLI;
+    private static volatile long targetTickNanos = 40 * NANOS_PER_MILLI;
+
+    private long budgetNanos = minBudgetNanos;
+    private long tickStartNanos;
+    private double averagePassNanos;
+
+    /**
+     * Starts a new tick and recomputes the budget from the server's average tick time.
+     *
+     * @param share number of budgets drawing on the same headroom this tick, at least 1
+     */
+    public void beginTick(MinecraftServer server, int share) {
+        long headroom = targetTickNanos - server.getAverageTickTimeNanos();
+        long min = minBudgetNanos / share;
+        long max = Math.max(min, maxBudgetNanos / share);
+        long wanted = clamp((long) (headroom * HEADROOM_SHARE / share), min, max);
+        double rate = wanted < budgetNanos ? SHRINK_RATE : GROW_RATE;
+        budgetNanos = clamp(budgetNanos + (long) ((wanted - budgetNanos) * rate), min, max);
+        tickStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Whether another pass is expected to finish inside this tick's budget.
+     */
+    public boolean hasTimeFor() {
+        return elapsedNanos() + (long) averagePassNanos <= budgetNanos;
+    }
+
+    public boolean isExhausted() {
+        return elapsedNanos() >= budgetNanos;
+    }
+
+    public void recordPass(long nanos) {
+        averagePassNanos = averagePassNanos == 0.0
+                ? nanos
+                : averagePassNanos + (nanos - averagePassNanos) * COST_SMOOTHING;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - tickStartNanos;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public long getAveragePassNanos() {
+        return (long) averagePassNanos;
+    }
+
+    public static long getMinBudgetNanos() {
+        return minBudgetNanos;
+    }
+
+    public static long getMaxBudgetNanos() {
+        return maxBudgetNanos;
+    }
+
+    public static long getTargetTickNanos() {
+        return targetTickNanos;
+    }
+
+    public static void setMinBudgetMillis(double millis) {
+        minBudgetNanos = (long) (millis * NANOS_PER_MILLI);
+        if (maxBudgetNanos < minBudgetNanos) {
+            maxBudgetNanos = minBudgetNanos;
+        }
+    }
+
+    public static void setMaxBudgetMillis(double millis) {
+        maxBudgetNanos = (long) (millis * NANOS_PER_MILLI);
+        if (minBudgetNanos > maxBudgetNanos) {
+            minBudgetNanos = maxBudgetNanos;
+        }
+    }
+
+    public static void setTargetTickMillis(double millis) {
+        targetTickNanos = (long) (millis * NANOS_PER_MILLI);
+    }
+
+    private static long clamp(long nanos, long min, long max) {
+        return Math.max(min, Math.min(max, nanos));
+    }
+}
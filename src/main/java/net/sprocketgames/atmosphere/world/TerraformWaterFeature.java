@@ -0,0 +1,22 @@
+package net.sprocketgames.atmosphere.world;
+
+import net.minecraft.world.level.WorldGenLevel;
+import net.minecraft.world.level.levelgen.feature.Feature;
+import net.minecraft.world.level.levelgen.feature.FeaturePlaceContext;
+import net.minecraft.world.level.levelgen.feature.configurations.NoneFeatureConfiguration;
+
+/**
+ * Applies the level's water level to each new chunk as its last decoration step, before lighting. Added to every
+ * biome by the {@code terraform_water} biome modifier; it only writes to the chunk being decorated.
+ */
+public final class TerraformWaterFeature extends Feature<NoneFeatureConfiguration> {
+    public TerraformWaterFeature() {
+        super(NoneFeatureConfiguration.CODEC);
+    }
+
+    @Override
+    public boolean place(FeaturePlaceContext<NoneFeatureConfiguration> context) {
+        WorldGenLevel level = context.level();
+        return TerraformWaterSystem.applyDuringGeneration(level.getLevel().dimension(), level.getChunk(context.origin()));
+    }
+}
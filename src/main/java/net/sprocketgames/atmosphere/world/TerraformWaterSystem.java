@@ -1,12 +1,21 @@
 package net.sprocketgames.atmosphere.world;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.SectionPos;
 import net.minecraft.resources.ResourceKey;
@@ -14,27 +23,82 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
-import net.minecraft.tags.FluidTags;
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.neoforged.neoforge.event.entity.EntityEvent;
+import net.neoforged.neoforge.event.entity.EntityJoinLevelEvent;
+import net.neoforged.neoforge.event.entity.EntityLeaveLevelEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.tick.LevelTickEvent;
 import net.sprocketgames.atmosphere.Atmosphere;
+import net.sprocketgames.atmosphere.data.AtmosphereAttachments;
+import net.sprocketgames.atmosphere.data.ChunkWaterSummary;
+import net.sprocketgames.atmosphere.data.HydrationMigrations;
 import net.sprocketgames.atmosphere.data.TerraformIndexData;
+import net.sprocketgames.atmosphere.network.AtmosphereNetwork;
+import net.sprocketgames.atmosphere.network.TerraformUpdatePacer;
+import net.sprocketgames.atmosphere.network.WaterSectionPayload;
 
 /**
- * Handles throttled water placement/removal in the Overworld using the global water level.
+ * Handles throttled water placement/removal for one level using that level's water level.
+ *
+ * <p>Every server level gets its own instance with its own queue, data and tick budget. Levels only process their
+ * queue while the water system is enabled in their {@link TerraformIndexData}; the Overworld is enabled by default.
+ * Levels tick one after another on the server thread, so the tick headroom is split between the levels that have
+ * work, and their off-thread analyses share the worker pool side by side.
+ *
+ * <p>Chunks processed under an older hydration revision are not queued as they load. The ones a newer revision could
+ * change wait in a separate migration list that is only fed to the queue a few at a time, while nothing else is
+ * queued, under a smaller budget of its own; see {@link HydrationMigrations}.
  */
 public final class TerraformWaterSystem {
-    private static final int MAX_CHUNKS_PER_TICK = 2;
     private static final int PLAYER_PRIORITY_RADIUS = 2;
-
-    private static final Map<ResourceKey<Level>, ChunkQueue> QUEUES = new HashMap<>();
+    /** Migration passes get this fraction of a level's normal tick headroom. */
+    private static final int MIGRATION_SHARE_DIVISOR = 4;
+    /** Outdated chunks handed to the queue at once; more are only fed in as these finish. */
+    private static final int MIGRATION_BATCH = 4;
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private static final Map<ResourceKey<Level>, TerraformWaterSystem> SYSTEMS = new HashMap<>();
+    /** Water levels of enabled levels, published for chunk generation threads. */
+    private static final Map<ResourceKey<Level>, Integer> GENERATION_WATER_LEVELS = new ConcurrentHashMap<>();
     private static final boolean LOG_CHUNK_UPDATES = true;
 
-    private TerraformWaterSystem() {
+    private final ServerLevel level;
+    private final PlayerChunkIndex players = new PlayerChunkIndex();
+    private final ChunkQueue queue = new ChunkQueue(players);
+    private final TerraformTickBudget budget = new TerraformTickBudget();
+    private final TerraformTickBudget migrationBudget = new TerraformTickBudget();
+    /** Budget of the pass running right now: {@link #budget}, or {@link #migrationBudget} for migration-only ticks. */
+    private TerraformTickBudget activeBudget = budget;
+    /** Loaded outdated chunks waiting to be migrated, in load order. */
+    private final LongLinkedOpenHashSet migrations = new LongLinkedOpenHashSet();
+    /** Migrated chunks currently holding a queue task. */
+    private final LongOpenHashSet migrating = new LongOpenHashSet();
+    private final TerraformStats stats = new TerraformStats();
+
+    private TerraformWaterSystem(ServerLevel level) {
+        this.level = level;
+    }
+
+    public static TerraformWaterSystem forLevel(ServerLevel level) {
+        TerraformWaterSystem system = SYSTEMS.get(level.dimension());
+        if (system == null || system.level != level) {
+            system = new TerraformWaterSystem(level);
+            SYSTEMS.put(level.dimension(), system);
+        }
+        return system;
+    }
+
+    public static Collection<TerraformWaterSystem> systems() {
+        return SYSTEMS.values();
     }
 
     public static void onLevelTick(LevelTickEvent.Post event) {
@@ -42,58 +106,281 @@ public final class TerraformWaterSystem {
             return;
         }
 
-        if (serverLevel.dimension() != Level.OVERWORLD) {
+        TerraformIndexData data = TerraformIndexData.get(serverLevel);
+        publishGenerationState(serverLevel, data);
+        if (!data.isWaterSystemEnabled()) {
             return;
         }
 
-        processQueue(serverLevel);
+        forLevel(serverLevel).processQueue();
+    }
+
+    public static void onLevelLoad(LevelEvent.Load event) {
+        // Published before the spawn area generates, which happens ahead of the first level tick.
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            publishGenerationState(serverLevel, TerraformIndexData.get(serverLevel));
+        }
+    }
+
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            SYSTEMS.remove(serverLevel.dimension());
+            GENERATION_WATER_LEVELS.remove(serverLevel.dimension());
+        }
+    }
+
+    public static void onEnteringSection(EntityEvent.EnteringSection event) {
+        if (event.didChunkChange() && event.getEntity() instanceof ServerPlayer player) {
+            forLevel(player.serverLevel()).playerMoved(player);
+        }
+    }
+
+    public static void onEntityJoinLevel(EntityJoinLevelEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player && event.getLevel() instanceof ServerLevel serverLevel) {
+            forLevel(serverLevel).playerMoved(player);
+        }
+    }
+
+    public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player && event.getLevel() instanceof ServerLevel serverLevel) {
+            TerraformWaterSystem system = SYSTEMS.get(serverLevel.dimension());
+            if (system != null) {
+                system.players.remove(player.getUUID());
+            }
+        }
+    }
+
+    private static void publishGenerationState(ServerLevel level, TerraformIndexData data) {
+        if (data.isWaterSystemEnabled()) {
+            GENERATION_WATER_LEVELS.put(level.dimension(), data.getWaterLevelY());
+        } else {
+            GENERATION_WATER_LEVELS.remove(level.dimension());
+        }
+    }
+
+    /**
+     * Generation thread: applies the level's water level to a chunk that is still being generated, before it is
+     * lit or sent, and marks it processed so it never needs a tick pass.
+     *
+     * <p>The chunk is owned by the calling thread, so sections are written directly with no light checks, block
+     * updates or packets. Heightmaps are primed again afterwards because direct section writes bypass them. The
+     * water summary is left unnarrowed: features of neighbouring chunks may still write into this chunk.
+     *
+     * @return whether the chunk was terraformed
+     */
+    public static boolean applyDuringGeneration(ResourceKey<Level> dimension, ChunkAccess chunk) {
+        Integer waterLevel = GENERATION_WATER_LEVELS.get(dimension);
+        if (waterLevel == null) {
+            return false;
+        }
+
+        ChunkWaterSummary summary = chunk.getData(AtmosphereAttachments.WATER_SUMMARY);
+        WaterChunkPlan plan = WaterChunkPlan.capture(chunk, summary, waterLevel, true).analyze();
+        for (WaterChunkPlan.SectionPlan sectionPlan : plan.sections) {
+            if (sectionPlan.bulk == WaterChunkPlan.BULK_FILL) {
+                swapSectionStates(chunk, sectionPlan.sectionIndex, Blocks.WATER.defaultBlockState());
+                continue;
+            }
+            if (sectionPlan.bulk == WaterChunkPlan.BULK_DRAIN) {
+                swapSectionStates(chunk, sectionPlan.sectionIndex, Blocks.AIR.defaultBlockState());
+                continue;
+            }
+
+            long[] mask = sectionPlan.mask;
+            if (mask == null) {
+                continue;
+            }
+
+            LevelChunkSection section = chunk.getSection(sectionPlan.sectionIndex);
+            int sectionMinY = SectionPos.sectionToBlockCoord(sectionPlan.sectionY);
+            for (int word = 0; word < mask.length; word++) {
+                long bits = mask[word];
+                while (bits != 0L) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int x = index >> 8;
+                    int z = (index >> 4) & 15;
+                    int y = index & 15;
+                    BlockState target = WaterStateTable.targetState(section.getBlockState(x, y, z), sectionMinY + y, waterLevel, true);
+                    if (target != null) {
+                        section.setBlockState(x, y, z, target, false);
+                    }
+                }
+            }
+        }
+
+        if (!plan.sections.isEmpty()) {
+            Heightmap.primeHeightmaps(chunk, ChunkStatus.POST_FEATURES);
+        }
+        chunk.getData(AtmosphereAttachments.TERRAFORM_STATE).markProcessed(waterLevel, TerraformIndexData.CURRENT_HYDRATION_REVISION);
+        chunk.setUnsaved(true);
+        return true;
+    }
+
+    public ServerLevel level() {
+        return level;
+    }
+
+    public TerraformTickBudget budget() {
+        return budget;
+    }
+
+    public int queuedChunks() {
+        return queue.size();
+    }
+
+    /**
+     * Loaded chunks still to be migrated to the current hydration revision, including those being migrated.
+     */
+    public int pendingMigrations() {
+        return migrations.size() + migrating.size();
+    }
+
+    public int analysesInFlight() {
+        return queue.analysesInFlight();
+    }
+
+    public TerraformStats stats() {
+        return stats;
+    }
+
+    public int queuedPriority() {
+        return queue.priorityDepth();
+    }
+
+    public int queuedNormal() {
+        return queue.normalDepth();
+    }
+
+    /**
+     * Queued tasks that only clean up after a neighbour; they sit in either lane.
+     */
+    public int queuedCleanup() {
+        return queue.cleanupDepth();
     }
 
-    public static void enqueue(ServerLevel level, ChunkPos pos) {
-        ChunkQueue queue = queueFor(level);
+    /**
+     * How long the oldest queued task has been waiting, or 0 if the queue is empty.
+     */
+    public long oldestTaskAgeNanos() {
+        long oldest = queue.oldestTaskNanos();
+        return oldest == Long.MAX_VALUE ? 0L : System.nanoTime() - oldest;
+    }
+
+    /**
+     * @param generated whether the chunk was just generated, in which case generation normally terraformed it
+     */
+    public void enqueue(LevelChunk chunk, boolean generated) {
         TerraformIndexData data = TerraformIndexData.get(level);
         int waterLevel = data.getWaterLevelY();
+        ChunkPos pos = chunk.getPos();
         long chunkKey = pos.toLong();
 
+        data.adoptLegacyState(chunk);
         queue.markLoaded(chunkKey);
-        if (!data.isChunkProcessed(chunkKey, waterLevel)) {
+        if (!data.isWaterSystemEnabled()) {
+            // Only tracked so enabling the system later can queue everything already loaded.
+            return;
+        }
+        if (generated && data.isChunkProcessed(chunk, waterLevel)) {
+            // Terraformed while generating; nothing left for a tick pass to do here. Its own features may still
+            // have reached into processed neighbours, which need their cleanup as on any other load.
+            scheduleProcessedNeighborsForCleanup(data, waterLevel, pos, true);
+            return;
+        }
+        if (data.isChunkOutdated(chunk, waterLevel)) {
+            if (data.migrateIfUnaffected(chunk, waterLevel)) {
+                stats.recordMigration(false);
+            } else {
+                migrations.add(chunkKey);
+            }
+            // Only this chunk's own pass is deferred; its neighbours are cleaned up as on any other load.
+            scheduleProcessedNeighborsForCleanup(data, waterLevel, pos, true);
+            return;
+        }
+
+        if (!data.isChunkProcessed(chunk, waterLevel)) {
             queue.ensureTask(chunkKey);
             queue.prioritize(chunkKey);
         } else if (!queue.hasTask(chunkKey)) {
             queue.ensureTask(chunkKey);
         }
 
-        scheduleProcessedNeighborsForCleanup(queue, data, waterLevel, pos, true);
+        scheduleProcessedNeighborsForCleanup(data, waterLevel, pos, true);
     }
 
-    public static void unload(ServerLevel level, ChunkPos pos) {
-        ChunkQueue queue = queueFor(level);
-        queue.drop(pos.toLong());
+    public void unload(ChunkPos pos) {
+        long chunkKey = pos.toLong();
+        queue.drop(chunkKey);
+        migrations.remove(chunkKey);
+        migrating.remove(chunkKey);
+    }
+
+    /**
+     * Widens the chunk's water summary after a block write through {@link LevelChunk#setBlockState}. Water passes
+     * write sections directly and record what they wrote themselves.
+     */
+    public static void onBlockChanged(LevelChunk chunk, BlockPos pos) {
+        if (!chunk.hasData(AtmosphereAttachments.WATER_SUMMARY)) {
+            return;
+        }
+
+        ChunkWaterSummary summary = chunk.getData(AtmosphereAttachments.WATER_SUMMARY);
+        summary.widen(chunk.getSectionIndex(pos.getY()), ChunkWaterSummary.column(pos.getX() & 15, pos.getZ() & 15), pos.getY());
     }
 
-    public static void requeueLoaded(ServerLevel level) {
-        ChunkQueue queue = queueFor(level);
+    public void requeueLoaded() {
+        // Every loaded chunk gets a full pass at the new level, which brings outdated ones up to date as well.
+        migrations.clear();
+        migrating.clear();
         queue.requeueLoaded();
+        TerraformIndexData data = TerraformIndexData.get(level);
+        if (data.isWaterSystemEnabled()) {
+            players.forEachPriorityChunk(PLAYER_PRIORITY_RADIUS, chunkKey -> prioritizeNearPlayer(data, data.getWaterLevelY(), chunkKey));
+        }
     }
 
-    private static ChunkQueue queueFor(ServerLevel level) {
-        return QUEUES.computeIfAbsent(level.dimension(), key -> new ChunkQueue());
+    /**
+     * Levels that currently have queued or in-flight work; each gets an equal share of the tick headroom.
+     */
+    private static int activeSystems() {
+        int active = 0;
+        for (TerraformWaterSystem system : SYSTEMS.values()) {
+            boolean hasWork = !system.queue.isEmpty() || system.queue.analysesInFlight() > 0;
+            if (hasWork && TerraformIndexData.get(system.level).isWaterSystemEnabled()) {
+                active++;
+            }
+        }
+        return Math.max(1, active);
     }
 
-    private static void processQueue(ServerLevel level) {
-        ChunkQueue queue = queueFor(level);
+    private void processQueue() {
         TerraformIndexData data = TerraformIndexData.get(level);
         int waterLevel = data.getWaterLevelY();
 
-        prioritizePlayerChunks(level, queue, data, waterLevel);
+        queue.pollAnalyses();
+        finishMigrations();
+        if (queue.taskCount() == migrating.size()) {
+            feedMigrations(data, waterLevel);
+        }
 
         if (queue.isEmpty()) {
             return;
         }
 
+        TerraformJfrEvents.Tick tickEvent = new TerraformJfrEvents.Tick();
+        tickEvent.begin();
+        long tickStart = System.nanoTime();
+        int share = activeSystems();
+        boolean migrationOnly = queue.taskCount() == migrating.size();
+        activeBudget = migrationOnly ? migrationBudget : budget;
+        activeBudget.beginTick(level.getServer(), migrationOnly ? share * MIGRATION_SHARE_DIVISOR : share);
+        int maxInFlight = Math.max(1, TerraformWorkers.maxInFlight() / share);
         int processedChunks = 0;
+        // Bounds the pops per tick so chunks that keep getting requeued cannot spin until the budget runs out.
+        int remainingPops = queue.size();
 
-        while (processedChunks < MAX_CHUNKS_PER_TICK) {
+        while (remainingPops-- > 0 && (processedChunks == 0 || activeBudget.hasTimeFor())) {
             long chunkKey;
             boolean fromPriority;
             if (processedChunks == 0 && queue.hasPriority()) {
@@ -126,185 +413,349 @@ public final class TerraformWaterSystem {
                 continue;
             }
 
-            int previousWaterLevel = data.getProcessedWaterLevel(chunkKey);
-            boolean allowWaterPlacement = previousWaterLevel == Integer.MIN_VALUE || waterLevel >= previousWaterLevel;
-            int removed = fastDrainChunk(chunk, waterLevel, level);
-            int placed = allowWaterPlacement ? fastFillChunk(chunk, waterLevel, level) : 0;
-            if (LOG_CHUNK_UPDATES && (placed > 0 || removed > 0)) {
+            if (work.phase == ChunkWork.PHASE_ANALYZING) {
+                // Bumped into a lane while its analysis is still running; pollAnalyses requeues it when done.
+                continue;
+            }
+
+            long sliceStart = System.nanoTime();
+            if (work.phase == ChunkWork.PHASE_PENDING) {
+                if (queue.analysesInFlight() >= maxInFlight) {
+                    queue.resume(chunkKey, fromPriority);
+                    break;
+                }
+
+                ChunkWaterSummary summary = chunk.getData(AtmosphereAttachments.WATER_SUMMARY);
+                // Cleanup follows writes from neighbouring chunks that never widened this chunk's summary.
+                ChunkWaterSummary captureSummary = work.cleanupOnly ? summary.forFullScan() : summary;
+                WaterChunkPlan plan = capturePlan(chunk, captureSummary, data.getProcessedWaterLevel(chunk), waterLevel);
+                work.elapsedNanos += System.nanoTime() - sliceStart;
+                processedChunks++;
+                if (plan.needsAnalysis()) {
+                    work.startAnalysis(plan, fromPriority);
+                    queue.trackAnalysis(work);
+                    continue;
+                }
+
+                // Palettes alone settled every section; apply straight away.
+                work.startApply(plan);
+                sliceStart = System.nanoTime();
+            }
+
+            TerraformLightBatch light = new TerraformLightBatch(chunk);
+            ChunkWaterSummary summary = chunk.getData(AtmosphereAttachments.WATER_SUMMARY);
+            boolean complete = applyPlan(chunk, work, summary, light);
+            work.lightChecks += light.flush(level);
+            work.changedBlocks += light.changedBlocks();
+            work.elapsedNanos += System.nanoTime() - sliceStart;
+            processedChunks++;
+
+            if (!complete) {
+                // Out of budget mid-pass: keep the cursor and resume this chunk first on the next tick.
+                queue.resume(chunkKey, fromPriority);
+                break;
+            }
+
+            if (work.resendChunk) {
+                resendChunk(chunk, level);
+            }
+            WaterChunkPlan plan = work.plan;
+            if (work.staleBlocks == 0 && summary.modCount() == plan.summaryModCount) {
+                summary.narrowAfterPass(chunk.getMinSection(), chunk.getSectionsCount(), plan.minY, plan.maxY, plan.waterLevelY, plan.allowFill);
+                chunk.setUnsaved(true);
+            }
+            if (LOG_CHUNK_UPDATES && (work.placed > 0 || work.removed > 0)) {
                 Atmosphere.LOGGER.debug(
-                        "Terraform water @ chunk ({}, {}), placed {}, removed {}",
+                        "Terraform water @ chunk ({}, {}), placed {}, removed {}, light checks {} (per-block {})",
                         chunk.getPos().x,
                         chunk.getPos().z,
-                        placed,
-                        removed);
+                        work.placed,
+                        work.removed,
+                        work.lightChecks,
+                        work.changedBlocks);
             }
 
             boolean wasInitialPass = !work.cleanupOnly;
-            data.markChunkProcessed(chunkKey, waterLevel);
+            data.markChunkProcessed(chunk, waterLevel);
             if (wasInitialPass) {
-                scheduleProcessedNeighborsForCleanup(queue, data, waterLevel, work.pos, true);
+                scheduleProcessedNeighborsForCleanup(data, waterLevel, work.pos, true);
             }
 
-            queue.finish(chunkKey);
+            activeBudget.recordPass(work.elapsedNanos);
+            recordPass(work);
+            if (work.rescan || work.staleBlocks > 0) {
+                // Either a neighbour asked for cleanup after the copy was taken, or the chunk was edited while
+                // the copy was being analysed. Both mean another pass over fresh state.
+                work.restartAsCleanup();
+                queue.requeue(chunkKey, fromPriority);
+            } else {
+                queue.finish(chunkKey);
+            }
+        }
 
-            processedChunks++;
+        stats.recordTick(System.nanoTime() - tickStart);
+        if (tickEvent.shouldCommit()) {
+            tickEvent.dimension = level.dimension().location().toString();
+            tickEvent.budgetNanos = activeBudget.getBudgetNanos();
+            tickEvent.chunks = processedChunks;
+            tickEvent.priorityDepth = queue.priorityDepth();
+            tickEvent.normalDepth = queue.normalDepth();
+            tickEvent.analysesInFlight = queue.analysesInFlight();
+            tickEvent.commit();
         }
     }
 
-    private static int fastDrainChunk(LevelChunk chunk, int waterLevelY, ServerLevel level) {
-        int removed = 0;
-        int minSection = chunk.getMinSection();
-        int maxSection = chunk.getMaxSection();
-        int startSection = Math.max(minSection, SectionPos.blockToSectionCoord(waterLevelY));
-        BlockState air = Blocks.AIR.defaultBlockState();
-        BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
-
-        for (int sectionY = startSection; sectionY < maxSection; sectionY++) {
-            int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
-            int sectionMaxY = sectionMinY + 15;
-            if (sectionMaxY <= waterLevelY) {
-                continue;
+    /**
+     * Counts migrated chunks whose task has finished.
+     */
+    private void finishMigrations() {
+        if (migrating.isEmpty()) {
+            return;
+        }
+        for (LongIterator iterator = migrating.iterator(); iterator.hasNext(); ) {
+            if (!queue.hasTask(iterator.nextLong())) {
+                iterator.remove();
+                stats.recordMigration(true);
             }
+        }
+    }
 
-            LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY));
-            if (!section.maybeHas(state -> state.getFluidState().is(FluidTags.WATER) || (state.hasProperty(BlockStateProperties.WATERLOGGED) && state.getValue(BlockStateProperties.WATERLOGGED)))) {
+    /**
+     * Tops the queue up with outdated chunks until {@link #MIGRATION_BATCH} of them are in it. Chunks that were
+     * unloaded, or processed again in the meantime, are skipped.
+     */
+    private void feedMigrations(TerraformIndexData data, int waterLevel) {
+        while (migrating.size() < MIGRATION_BATCH && !migrations.isEmpty()) {
+            long chunkKey = migrations.removeFirstLong();
+            LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+            if (chunk == null || !data.isChunkOutdated(chunk, waterLevel) || queue.hasTask(chunkKey)) {
                 continue;
             }
 
-            int minLocalY = Math.max(0, waterLevelY - sectionMinY + 1);
-            int worldBaseX = chunk.getPos().getMinBlockX();
-            int worldBaseZ = chunk.getPos().getMinBlockZ();
-            // NeoForge 1.21 uses section.acquire/release + setBlockState(..., false) to avoid per-call locks.
-            // If APIs differ, use section.getStates().acquire()/release() or section.setBlockState(x,y,z,state) as available.
-            section.acquire();
-            try {
-                for (int y = minLocalY; y < 16; y++) {
-                    int worldY = sectionMinY + y;
-                    for (int x = 0; x < 16; x++) {
-                        int worldX = worldBaseX + x;
-                        for (int z = 0; z < 16; z++) {
-                            BlockState state = section.getBlockState(x, y, z);
-                            if (state.hasProperty(BlockStateProperties.WATERLOGGED) && state.getValue(BlockStateProperties.WATERLOGGED)) {
-                                BlockState cleared = state.setValue(BlockStateProperties.WATERLOGGED, false);
-                                section.setBlockState(x, y, z, cleared, false);
-                                cursor.set(worldX, worldY, worldBaseZ + z);
-                                level.getChunkSource().blockChanged(cursor);
-                                level.getChunkSource().getLightEngine().checkBlock(cursor);
-                                removed++;
-                                continue;
-                            }
-
-                            if (!state.getFluidState().is(FluidTags.WATER)) {
-                                continue;
-                            }
-
-                            section.setBlockState(x, y, z, air, false);
-                            cursor.set(worldX, worldY, worldBaseZ + z);
-                            level.getChunkSource().blockChanged(cursor);
-                            level.getChunkSource().getLightEngine().checkBlock(cursor);
-                            removed++;
-                        }
-                    }
-                }
-            } finally {
-                section.release();
-            }
+            queue.ensureTask(chunkKey);
+            migrating.add(chunkKey);
         }
+    }
 
-        if (removed > 0) {
-            chunk.setUnsaved(true);
+    private void recordPass(ChunkWork work) {
+        int drained = work.removed - work.unwaterlogged;
+        stats.recordPass(work.elapsedNanos, work.placed, drained, work.unwaterlogged, work.lightChecks);
+
+        TerraformJfrEvents.ChunkPass event = new TerraformJfrEvents.ChunkPass();
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.chunkX = work.pos.x;
+            event.chunkZ = work.pos.z;
+            event.cleanupOnly = work.cleanupOnly;
+            event.elapsedNanos = work.elapsedNanos;
+            event.placed = work.placed;
+            event.drained = drained;
+            event.unwaterlogged = work.unwaterlogged;
+            event.lightChecks = work.lightChecks;
+            event.commit();
+        }
+    }
+
+    /**
+     * A chunk last processed at level {@code previous} only differs from the target in the band between the two
+     * levels: a rise fills {@code (previous, target]}, a drop drains {@code (target, previous]}. Chunks without
+     * history, and passes at an unchanged level (cleanup after neighbours), still scan the full column.
+     */
+    private static WaterChunkPlan capturePlan(LevelChunk chunk, ChunkWaterSummary summary, int previousWaterLevel, int waterLevel) {
+        if (previousWaterLevel == Integer.MIN_VALUE) {
+            return WaterChunkPlan.capture(chunk, summary, waterLevel, true);
+        }
+
+        boolean allowWaterPlacement = waterLevel >= previousWaterLevel;
+        if (previousWaterLevel == waterLevel) {
+            return WaterChunkPlan.capture(chunk, summary, waterLevel, allowWaterPlacement);
         }
 
-        return removed;
+        int bandMinY = Math.min(previousWaterLevel, waterLevel) + 1;
+        int bandMaxY = Math.max(previousWaterLevel, waterLevel);
+        return WaterChunkPlan.capture(chunk, summary, waterLevel, allowWaterPlacement, bandMinY, bandMaxY);
     }
 
-    private static int fastFillChunk(LevelChunk chunk, int waterLevelY, ServerLevel level) {
-        int placed = 0;
-        int minSection = chunk.getMinSection();
-        int maxSection = chunk.getMaxSection();
-        int endSection = Math.min(maxSection, SectionPos.blockToSectionCoord(waterLevelY) + 1);
-        BlockState water = Blocks.WATER.defaultBlockState();
+    /**
+     * Applies the analysed plan from the work's cursor until it is done or the tick budget runs out. Every call
+     * makes progress on at least one section before checking the budget.
+     *
+     * @return true once every section of the plan has been applied
+     */
+    private boolean applyPlan(LevelChunk chunk, ChunkWork work, ChunkWaterSummary summary, TerraformLightBatch light) {
         BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
-
-        for (int sectionY = minSection; sectionY < endSection; sectionY++) {
-            int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
-            int sectionMaxY = sectionMinY + 15;
-            if (sectionMinY > waterLevelY) {
-                continue;
+        List<WaterChunkPlan.SectionPlan> sections = work.plan.sections;
+        boolean progressed = false;
+        // Decided per slice: a player without the mod may start tracking the chunk between slices.
+        boolean compact = AtmosphereNetwork.canSendWaterSections(level, chunk.getPos());
+
+        while (work.nextSection < sections.size()) {
+            if (progressed && activeBudget.isExhausted()) {
+                return false;
             }
 
-            LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY));
-            int maxLocalY = Math.min(15, waterLevelY - sectionMinY);
-            boolean fullSection = sectionMaxY <= waterLevelY;
-
-            if (fullSection && section.hasOnlyAir()) {
-                int worldBaseX = chunk.getPos().getMinBlockX();
-                int worldBaseZ = chunk.getPos().getMinBlockZ();
-                // NeoForge 1.21 uses section.acquire/release + setBlockState(..., false) for bulk edits.
-                // If APIs differ, fall back to section.setBlockState without the locking flag.
-                section.acquire();
-                try {
-                    for (int y = 0; y < 16; y++) {
-                        int worldY = sectionMinY + y;
-                        for (int x = 0; x < 16; x++) {
-                            int worldX = worldBaseX + x;
-                            for (int z = 0; z < 16; z++) {
-                                section.setBlockState(x, y, z, water, false);
-                                cursor.set(worldX, worldY, worldBaseZ + z);
-                                level.getChunkSource().blockChanged(cursor);
-                                level.getChunkSource().getLightEngine().checkBlock(cursor);
-                                placed++;
-                            }
-                        }
-                    }
-                } finally {
-                    section.release();
-                }
-                continue;
+            boolean sectionDone = applySection(chunk, work, sections.get(work.nextSection), summary, light, cursor, compact);
+            progressed = true;
+            if (!sectionDone) {
+                return false;
             }
 
-            if (!section.maybeHas(BlockState::isAir)) {
-                continue;
-            }
+            work.nextSection++;
+            work.nextColumn = 0;
+        }
 
-            int worldBaseX = chunk.getPos().getMinBlockX();
-            int worldBaseZ = chunk.getPos().getMinBlockZ();
-            // NeoForge 1.21 uses section.acquire/release + setBlockState(..., false) for bulk edits.
-            // If APIs differ, fall back to section.setBlockState without the locking flag.
-            section.acquire();
-            try {
-                for (int y = 0; y <= maxLocalY; y++) {
+        work.phase = ChunkWork.PHASE_DONE;
+        return true;
+    }
+
+    /**
+     * @param compact whether every tracking player gets {@link WaterSectionPayload}s, in which case no vanilla
+     *                block updates or chunk resends are issued for this section
+     */
+    private boolean applySection(LevelChunk chunk, ChunkWork work, WaterChunkPlan.SectionPlan sectionPlan, ChunkWaterSummary summary, TerraformLightBatch light, BlockPos.MutableBlockPos cursor, boolean compact) {
+        int sectionY = sectionPlan.sectionY;
+        int sectionIndex = chunk.getSectionIndexFromSectionY(sectionY);
+        LevelChunkSection section = chunk.getSection(sectionIndex);
+        if (section != sectionPlan.section) {
+            // Replaced since capture (another swap, or the chunk was reloaded); the plan no longer applies.
+            work.staleBlocks += Math.max(1, sectionPlan.changes);
+            return true;
+        }
+
+        WaterChunkPlan plan = work.plan;
+        if (sectionPlan.bulk == WaterChunkPlan.BULK_FILL) {
+            // Fully submerged air section: swap in a single-value water container instead of 4096 writes.
+            light.touchSection(sectionY);
+            swapSectionStates(chunk, sectionIndex, Blocks.WATER.defaultBlockState());
+            light.sectionReplaced(sectionY, false);
+            summary.recordSectionWater(sectionIndex, SectionPos.sectionToBlockCoord(sectionY) + 15);
+            sendWholeSection(chunk, work, sectionY, compact);
+            work.placed += SECTION_VOLUME;
+            return true;
+        }
+        if (sectionPlan.bulk == WaterChunkPlan.BULK_DRAIN) {
+            // Every palette entry is a water source, so the whole section drains back to air at once.
+            light.touchSection(sectionY);
+            swapSectionStates(chunk, sectionIndex, Blocks.AIR.defaultBlockState());
+            light.sectionReplaced(sectionY, true);
+            summary.recordSectionAir(sectionIndex, SectionPos.sectionToBlockCoord(sectionY));
+            sendWholeSection(chunk, work, sectionY, compact);
+            work.removed += SECTION_VOLUME;
+            return true;
+        }
+
+        long[] mask = sectionPlan.mask;
+        if (mask == null) {
+            return true;
+        }
+
+        int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
+        int worldBaseX = chunk.getPos().getMinBlockX();
+        int worldBaseZ = chunk.getPos().getMinBlockZ();
+        int placed = 0;
+        int removed = 0;
+        int unwaterlogged = 0;
+        long[] sent = compact ? new long[WaterChunkPlan.MASK_WORDS] : null;
+        light.touchSection(sectionY);
+        // NeoForge 1.21 uses section.acquire/release + setBlockState(..., false) to avoid per-call locks.
+        // If APIs differ, use section.getStates().acquire()/release() or section.setBlockState(x,y,z,state) as available.
+        section.acquire();
+        try {
+            // Each mask word covers four columns; the budget is checked every sixteen columns.
+            for (int word = work.nextColumn >> 2; word < mask.length; word++) {
+                long bits = mask[word];
+                while (bits != 0L) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int x = index >> 8;
+                    int z = (index >> 4) & 15;
+                    int y = index & 15;
                     int worldY = sectionMinY + y;
-                    for (int x = 0; x < 16; x++) {
-                        int worldX = worldBaseX + x;
-                        for (int z = 0; z < 16; z++) {
-                            BlockState state = section.getBlockState(x, y, z);
-                            if (!state.isAir()) {
-                                continue;
-                            }
-
-                            section.setBlockState(x, y, z, water, false);
-                            cursor.set(worldX, worldY, worldBaseZ + z);
-                            level.getChunkSource().blockChanged(cursor);
-                            level.getChunkSource().getLightEngine().checkBlock(cursor);
-                            placed++;
+                    BlockState target = WaterStateTable.targetState(section.getBlockState(x, y, z), worldY, plan.waterLevelY, plan.allowFill);
+                    if (target == null) {
+                        work.staleBlocks++;
+                        continue;
+                    }
+
+                    section.setBlockState(x, y, z, target, false);
+                    if (sent != null) {
+                        sent[word] |= 1L << (index & 63);
+                    } else {
+                        cursor.set(worldBaseX + x, worldY, worldBaseZ + z);
+                        level.getChunkSource().blockChanged(cursor);
+                    }
+                    boolean drained = worldY > plan.waterLevelY;
+                    light.blockChanged(x, worldY, z, drained);
+                    if (drained) {
+                        if (WaterStateTable.isAir(target)) {
+                            summary.recordAir(sectionIndex, ChunkWaterSummary.column(x, z), worldY);
+                        } else {
+                            unwaterlogged++;
                         }
+                        removed++;
+                    } else {
+                        summary.recordWater(sectionIndex, ChunkWaterSummary.column(x, z), worldY);
+                        placed++;
                     }
                 }
-            } finally {
-                section.release();
+
+                if ((word & 3) == 3 && word < mask.length - 1 && activeBudget.isExhausted()) {
+                    work.nextColumn = (word + 1) << 2;
+                    return false;
+                }
+            }
+        } finally {
+            section.release();
+            if (placed > 0 || removed > 0) {
+                work.placed += placed;
+                work.removed += removed;
+                work.unwaterlogged += unwaterlogged;
+                chunk.setUnsaved(true);
+                if (sent != null) {
+                    ChunkPos pos = chunk.getPos();
+                    AtmosphereNetwork.sendWaterSection(level, WaterSectionPayload.ofMask(pos.x, pos.z, sectionY, plan.waterLevelY, plan.allowFill, sent));
+                }
             }
         }
 
-        if (placed > 0) {
-            chunk.setUnsaved(true);
+        return true;
+    }
+
+    private void sendWholeSection(LevelChunk chunk, ChunkWork work, int sectionY, boolean compact) {
+        if (compact) {
+            ChunkPos pos = chunk.getPos();
+            AtmosphereNetwork.sendWaterSection(level, WaterSectionPayload.wholeSection(pos.x, pos.z, sectionY, work.plan.waterLevelY, work.plan.allowFill));
+        } else {
+            work.resendChunk = true;
         }
+    }
 
-        return placed;
+    /**
+     * Replaces a section with one backed by a single-value palette. The new section recounts its blocks on
+     * construction and keeps the biome container of the section it replaces.
+     */
+    private static void swapSectionStates(ChunkAccess chunk, int sectionIndex, BlockState state) {
+        LevelChunkSection[] sections = chunk.getSections();
+        LevelChunkSection previous = sections[sectionIndex];
+        PalettedContainer<BlockState> states = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, state, PalettedContainer.Strategy.SECTION_STATES);
+        sections[sectionIndex] = new LevelChunkSection(states, previous.getBiomes());
+        chunk.setUnsaved(true);
     }
 
+    /**
+     * Sends the whole chunk to tracking players once, instead of per-block updates for every swapped section. The
+     * packet is built when {@link TerraformUpdatePacer} gets to the chunk, so it carries the latest state.
+     */
+    static void resendChunk(LevelChunk chunk, ServerLevel level) {
+        TerraformUpdatePacer.queueChunk(chunk, level);
+    }
 
-    private static void scheduleProcessedNeighborsForCleanup(ChunkQueue queue, TerraformIndexData data, int waterLevel, ChunkPos pos, boolean prioritize) {
+    private boolean isChunkProcessed(TerraformIndexData data, long chunkKey, int waterLevel) {
+        LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+        return chunk != null && data.isChunkProcessed(chunk, waterLevel);
+    }
+
+    private void scheduleProcessedNeighborsForCleanup(TerraformIndexData data, int waterLevel, ChunkPos pos, boolean prioritize) {
         for (int dx = -1; dx <= 1; dx++) {
             for (int dz = -1; dz <= 1; dz++) {
                 if (dx == 0 && dz == 0) {
@@ -312,7 +763,7 @@ public final class TerraformWaterSystem {
                 }
 
                 long neighborKey = ChunkPos.asLong(pos.x + dx, pos.z + dz);
-                if (queue.isLoaded(neighborKey) && data.isChunkProcessed(neighborKey, waterLevel)) {
+                if (queue.isLoaded(neighborKey) && isChunkProcessed(data, neighborKey, waterLevel)) {
                     if (!queue.hasTask(neighborKey)) {
                         queue.ensureTask(neighborKey, true);
                     } else {
@@ -326,41 +777,131 @@ public final class TerraformWaterSystem {
         }
     }
 
-    private static void prioritizePlayerChunks(ServerLevel level, ChunkQueue queue, TerraformIndexData data, int waterLevel) {
-        for (ServerPlayer player : level.players()) {
-            ChunkPos playerChunk = player.chunkPosition();
-            for (int dx = -PLAYER_PRIORITY_RADIUS; dx <= PLAYER_PRIORITY_RADIUS; dx++) {
-                for (int dz = -PLAYER_PRIORITY_RADIUS; dz <= PLAYER_PRIORITY_RADIUS; dz++) {
-                    ChunkPos nearby = new ChunkPos(playerChunk.x + dx, playerChunk.z + dz);
-                    long chunkKey = nearby.toLong();
-                    if (!data.isChunkProcessed(chunkKey, waterLevel)) {
-                        queue.markLoaded(chunkKey);
-                        if (queue.hasTask(chunkKey)) {
-                            queue.prioritize(chunkKey);
-                        } else {
-                            queue.ensureTask(chunkKey, false);
-                            queue.prioritize(chunkKey);
-                        }
-                    }
-                }
-            }
+    /**
+     * Moves unprocessed chunks around the player, and ahead of them when they travel fast, into the priority lane.
+     * Runs only when the player enters a new chunk; the queue's distance ordering is refreshed for the same chunks.
+     */
+    private void playerMoved(ServerPlayer player) {
+        if (!players.move(player, level.getServer().getTickCount())) {
+            return;
+        }
+
+        TerraformIndexData data = TerraformIndexData.get(level);
+        if (!data.isWaterSystemEnabled()) {
+            return;
         }
+        int waterLevel = data.getWaterLevelY();
+        players.forEachPriorityChunk(player.getUUID(), PLAYER_PRIORITY_RADIUS, chunkKey -> prioritizeNearPlayer(data, waterLevel, chunkKey));
+    }
+
+    private void prioritizeNearPlayer(TerraformIndexData data, int waterLevel, long chunkKey) {
+        LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey));
+        if (chunk == null || data.isChunkProcessed(chunk, waterLevel) || data.isChunkOutdated(chunk, waterLevel)) {
+            // Outdated chunks stay with the migration, even next to players.
+            return;
+        }
+
+        queue.markLoaded(chunkKey);
+        queue.ensureTask(chunkKey, false);
+        queue.prioritize(chunkKey);
     }
 
+    /**
+     * Pending chunk work for one level. Keys stay primitive throughout: the normal lane is a linked hash set with
+     * O(1) removal, and the priority lane is an indexed heap ordered by squared distance to the nearest player,
+     * with insertion order breaking ties.
+     */
     private static final class ChunkQueue {
         private final Long2ObjectMap<ChunkWork> tasks = new Long2ObjectOpenHashMap<>();
-        private final ArrayDeque<Long> priorityOrder = new ArrayDeque<>();
-        private final ArrayDeque<Long> normalOrder = new ArrayDeque<>();
+        private final ChunkPriorityHeap priorityOrder = new ChunkPriorityHeap();
+        private final LongLinkedOpenHashSet normalOrder = new LongLinkedOpenHashSet();
         private final LongLinkedOpenHashSet loaded = new LongLinkedOpenHashSet();
+        private final List<ChunkWork> analyzing = new ArrayList<>();
+        private final PlayerChunkIndex players;
+        private int sequence;
+
+        ChunkQueue(PlayerChunkIndex players) {
+            this.players = players;
+        }
 
         boolean isEmpty() {
             return priorityOrder.isEmpty() && normalOrder.isEmpty();
         }
 
+        int size() {
+            return priorityOrder.size() + normalOrder.size();
+        }
+
+        /**
+         * Tasks in either lane or waiting for their analysis.
+         */
+        int taskCount() {
+            return tasks.size();
+        }
+
+        int priorityDepth() {
+            return priorityOrder.size();
+        }
+
+        int normalDepth() {
+            return normalOrder.size();
+        }
+
+        int cleanupDepth() {
+            int cleanup = 0;
+            for (ChunkWork work : tasks.values()) {
+                if (work.cleanupOnly) {
+                    cleanup++;
+                }
+            }
+            return cleanup;
+        }
+
+        /**
+         * {@link System#nanoTime()} at which the oldest task was queued, or {@link Long#MAX_VALUE} if there is none.
+         */
+        long oldestTaskNanos() {
+            long oldest = Long.MAX_VALUE;
+            for (ChunkWork work : tasks.values()) {
+                oldest = Math.min(oldest, work.queuedAtNanos);
+            }
+            return oldest;
+        }
+
         void markLoaded(long chunkKey) {
             loaded.add(chunkKey);
         }
 
+        void trackAnalysis(ChunkWork work) {
+            analyzing.add(work);
+        }
+
+        int analysesInFlight() {
+            return analyzing.size();
+        }
+
+        /**
+         * Moves chunks whose off-thread analysis has finished to the front of their lane. Results for tasks that
+         * were dropped or replaced in the meantime are discarded.
+         */
+        void pollAnalyses() {
+            for (Iterator<ChunkWork> iterator = analyzing.iterator(); iterator.hasNext(); ) {
+                ChunkWork work = iterator.next();
+                if (!work.analysis.isDone()) {
+                    continue;
+                }
+
+                iterator.remove();
+                long chunkKey = work.pos.toLong();
+                if (tasks.get(chunkKey) != work) {
+                    continue;
+                }
+
+                work.finishAnalysis();
+                resume(chunkKey, work.priorityLane);
+            }
+        }
+
         void ensureTask(long chunkKey) {
             ensureTask(chunkKey, false);
         }
@@ -370,8 +911,8 @@ public final class TerraformWaterSystem {
             if (work == null) {
                 tasks.put(chunkKey, new ChunkWork(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey), cleanupOnly));
                 normalOrder.add(chunkKey);
-            } else if (cleanupOnly && !work.cleanupOnly) {
-                work.cleanupOnly = true;
+            } else if (cleanupOnly) {
+                work.requestCleanup();
             }
         }
 
@@ -398,13 +939,11 @@ public final class TerraformWaterSystem {
         }
 
         long popPriority() {
-            Long value = priorityOrder.poll();
-            return value == null ? 0L : value;
+            return priorityOrder.isEmpty() ? 0L : priorityOrder.popFirst();
         }
 
         long popNormal() {
-            Long value = normalOrder.poll();
-            return value == null ? 0L : value;
+            return normalOrder.isEmpty() ? 0L : normalOrder.removeFirstLong();
         }
 
         ChunkWork peek(long chunkKey) {
@@ -412,23 +951,31 @@ public final class TerraformWaterSystem {
         }
 
         void prioritize(long chunkKey) {
-            if (tasks.containsKey(chunkKey)) {
-                if (priorityOrder.remove(chunkKey)) {
-                    priorityOrder.addFirst(chunkKey);
-                    return;
-                }
-                if (normalOrder.remove(chunkKey)) {
-                    priorityOrder.addFirst(chunkKey);
-                } else {
-                    priorityOrder.addFirst(chunkKey);
-                }
+            ChunkWork work = tasks.get(chunkKey);
+            if (work != null && work.phase == ChunkWork.PHASE_ANALYZING) {
+                work.priorityLane = true;
+            } else if (work != null) {
+                normalOrder.remove(chunkKey);
+                priorityOrder.upsert(chunkKey, priorityOf(chunkKey, sequence++));
             }
         }
 
         void flagCleanup(long chunkKey) {
             ChunkWork work = tasks.get(chunkKey);
             if (work != null) {
-                work.cleanupOnly = true;
+                work.requestCleanup();
+            }
+        }
+
+        void resume(long chunkKey, boolean priority) {
+            if (!tasks.containsKey(chunkKey)) {
+                return;
+            }
+            if (priority) {
+                // Sequence zero sorts a resumed pass ahead of other chunks at the same distance.
+                priorityOrder.upsert(chunkKey, priorityOf(chunkKey, 0));
+            } else {
+                normalOrder.addAndMoveToFirst(chunkKey);
             }
         }
 
@@ -437,11 +984,9 @@ public final class TerraformWaterSystem {
                 return;
             }
             if (priority) {
-                priorityOrder.remove(chunkKey);
-                priorityOrder.addLast(chunkKey);
+                priorityOrder.upsert(chunkKey, priorityOf(chunkKey, sequence++));
             } else {
-                normalOrder.remove(chunkKey);
-                normalOrder.addLast(chunkKey);
+                normalOrder.addAndMoveToLast(chunkKey);
             }
         }
 
@@ -460,12 +1005,47 @@ public final class TerraformWaterSystem {
         boolean hasTask(long chunkKey) {
             return tasks.containsKey(chunkKey);
         }
+
+        /**
+         * Squared chunk distance to the nearest player in the high 32 bits and an insertion sequence in the low
+         * 32 bits, so equally distant chunks keep first-in-first-out order.
+         */
+        private long priorityOf(long chunkKey, int order) {
+            long nearest = Math.min(Integer.MAX_VALUE, players.nearestDistanceSq(ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey)));
+            return (nearest << 32) | (order & 0xFFFFFFFFL);
+        }
     }
 
+    /**
+     * Resumable state of one chunk pass. A pass captures the chunk, waits for its off-thread analysis and then
+     * applies the resulting plan section by section, and within a section column by column, so it can stop when
+     * the tick budget runs out and pick up where it left off. Cursor and counters survive a requeue; they are only
+     * reset when the task is dropped.
+     */
     private static final class ChunkWork {
+        static final int PHASE_PENDING = 0;
+        static final int PHASE_ANALYZING = 1;
+        static final int PHASE_APPLYING = 2;
+        static final int PHASE_DONE = 3;
+
         final ChunkPos pos;
+        final long queuedAtNanos = System.nanoTime();
+        int phase = PHASE_PENDING;
+        CompletableFuture<WaterChunkPlan> analysis;
+        WaterChunkPlan plan;
+        boolean priorityLane;
+        int nextSection;
         int nextColumn = 0;
         boolean cleanupOnly;
+        boolean rescan;
+        boolean resendChunk;
+        int placed;
+        int removed;
+        int unwaterlogged;
+        int staleBlocks;
+        int lightChecks;
+        int changedBlocks;
+        long elapsedNanos;
 
         ChunkWork(int chunkX, int chunkZ) {
             this(chunkX, chunkZ, false);
@@ -475,5 +1055,55 @@ public final class TerraformWaterSystem {
             this.pos = new ChunkPos(chunkX, chunkZ);
             this.cleanupOnly = cleanupOnly;
         }
+
+        void startAnalysis(WaterChunkPlan captured, boolean priority) {
+            phase = PHASE_ANALYZING;
+            priorityLane = priority;
+            analysis = CompletableFuture.supplyAsync(captured::analyze, TerraformWorkers.executor());
+        }
+
+        void finishAnalysis() {
+            try {
+                startApply(analysis.join());
+            } catch (CompletionException | CancellationException e) {
+                Atmosphere.LOGGER.error("Terraform water analysis failed for chunk {}, retrying", pos, e);
+                phase = PHASE_PENDING;
+            }
+            analysis = null;
+        }
+
+        void startApply(WaterChunkPlan analysed) {
+            phase = PHASE_APPLYING;
+            plan = analysed;
+            nextSection = 0;
+            nextColumn = 0;
+        }
+
+        /**
+         * An initial pass already covers everything a cleanup pass does, so a pending initial pass is never
+         * downgraded. A pass that has already captured the chunk is asked to run again once it completes instead.
+         */
+        void requestCleanup() {
+            if (phase != PHASE_PENDING) {
+                rescan = true;
+            }
+        }
+
+        void restartAsCleanup() {
+            phase = PHASE_PENDING;
+            plan = null;
+            nextSection = 0;
+            nextColumn = 0;
+            cleanupOnly = true;
+            rescan = false;
+            resendChunk = false;
+            placed = 0;
+            removed = 0;
+            unwaterlogged = 0;
+            staleBlocks = 0;
+            lightChecks = 0;
+            changedBlocks = 0;
+            elapsedNanos = 0L;
+        }
     }
 }
@@ -0,0 +1,37 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sprocketgames.atmosphere.Atmosphere;
+
+/**
+ * Worker pool for terraform analysis that does not need the server thread. Kept separate from the vanilla
+ * background executor so scans never queue behind world generation.
+ */
+public final class TerraformWorkers {
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int MAX_IN_FLIGHT = THREADS * 4;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "Atmosphere-Terraform-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> Atmosphere.LOGGER.error("Uncaught exception in {}", t.getName(), e));
+        return thread;
+    });
+
+    private TerraformWorkers() {
+    }
+
+    public static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Upper bound on analyses waiting or running at once, which also bounds the memory held by state copies.
+     */
+    public static int maxInFlight() {
+        return MAX_IN_FLIGHT;
+    }
+}
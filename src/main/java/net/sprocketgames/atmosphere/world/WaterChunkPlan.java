@@ -0,0 +1,203 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.sprocketgames.atmosphere.data.ChunkWaterSummary;
+
+/**
+ * Water pass for one chunk, split so the expensive scanning can leave the server thread.
+ *
+ * <p>{@link #capture} runs on the server thread. It settles what it can from the palettes alone (whole-section
+ * swaps, sections with nothing to do) and copies the states of every other candidate section. {@link #analyze}
+ * then runs on a worker and turns each copy into a 4096-bit change mask. The server thread applies the masks.
+ *
+ * <p>A mask bit only says that a position needs work. The change itself follows from the position's height and
+ * its current state, see {@link WaterStateTable#targetState}: above the water level, water drains to air and waterlogged blocks
+ * dry out; at or below it, air becomes water. Deriving the change again at apply time doubles as validation.
+ * Positions edited after the copy was taken are skipped and reported as stale, never overwritten.
+ */
+final class WaterChunkPlan {
+    static final int BULK_NONE = 0;
+    static final int BULK_FILL = 1;
+    static final int BULK_DRAIN = 2;
+    static final int MASK_WORDS = 4096 / 64;
+
+    final int waterLevelY;
+    final boolean allowFill;
+    final int minY;
+    final int maxY;
+    final List<SectionPlan> sections;
+    final int summaryModCount;
+    private final int[] lowestAir;
+    private final int[] highestWater;
+
+    private WaterChunkPlan(int waterLevelY, boolean allowFill, int minY, int maxY, List<SectionPlan> sections, ChunkWaterSummary summary) {
+        this.waterLevelY = waterLevelY;
+        this.allowFill = allowFill;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.sections = sections;
+        this.summaryModCount = summary.modCount();
+        this.lowestAir = summary.lowestAirSnapshot();
+        this.highestWater = summary.highestWaterSnapshot();
+    }
+
+    /**
+     * Server thread: picks the sections that may need work and copies their states for analysis. Also used on a
+     * generation thread for a chunk that thread owns.
+     */
+    static WaterChunkPlan capture(ChunkAccess chunk, ChunkWaterSummary summary, int waterLevelY, boolean allowFill) {
+        return capture(chunk, summary, waterLevelY, allowFill, chunk.getMinBuildHeight(), chunk.getMaxBuildHeight() - 1);
+    }
+
+    /**
+     * Same as {@link #capture(ChunkAccess, ChunkWaterSummary, int, boolean)}, limited to the inclusive Y band
+     * {@code [minY, maxY]}. Sections outside the band are never read, and only sections that lie entirely inside it
+     * are swapped whole. Sections the chunk's water summary rules out are skipped without reading their palettes.
+     */
+    static WaterChunkPlan capture(ChunkAccess chunk, ChunkWaterSummary summary, int waterLevelY, boolean allowFill, int minY, int maxY) {
+        List<SectionPlan> sections = new ArrayList<>();
+        int firstSection = Math.max(chunk.getMinSection(), SectionPos.blockToSectionCoord(minY));
+        int lastSection = Math.min(chunk.getMaxSection() - 1, SectionPos.blockToSectionCoord(maxY));
+
+        for (int sectionY = firstSection; sectionY <= lastSection; sectionY++) {
+            int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
+            int sectionMaxY = sectionMinY + 15;
+            int bandMinY = Math.max(sectionMinY, minY);
+            int bandMaxY = Math.min(sectionMaxY, maxY);
+            boolean wholeSection = bandMinY == sectionMinY && bandMaxY == sectionMaxY;
+            int sectionIndex = chunk.getSectionIndexFromSectionY(sectionY);
+            boolean fillRange = allowFill && bandMinY <= waterLevelY
+                    && summary.mayNeedFill(sectionIndex, bandMinY, Math.min(bandMaxY, waterLevelY));
+            boolean drainRange = bandMaxY > waterLevelY
+                    && summary.mayNeedDrain(sectionIndex, Math.max(bandMinY, waterLevelY + 1), bandMaxY);
+            if (!fillRange && !drainRange) {
+                continue;
+            }
+
+            LevelChunkSection section = chunk.getSection(sectionIndex);
+            boolean waterlogged = summary.mayHaveWaterlogged(sectionIndex);
+
+            if (wholeSection && fillRange && sectionMaxY <= waterLevelY && section.hasOnlyAir()) {
+                sections.add(new SectionPlan(sectionY, sectionIndex, section, BULK_FILL, null, waterlogged));
+                continue;
+            }
+
+            if (wholeSection && drainRange && sectionMinY > waterLevelY && !section.hasOnlyAir() && !section.maybeHas(WaterStateTable.IS_NOT_WATER_SOURCE)) {
+                sections.add(new SectionPlan(sectionY, sectionIndex, section, BULK_DRAIN, null, waterlogged));
+                continue;
+            }
+
+            boolean needsScan = (drainRange && section.maybeHas(WaterStateTable.IS_DRAINABLE))
+                    || (fillRange && section.maybeHas(WaterStateTable.IS_AIR));
+            if (needsScan) {
+                sections.add(new SectionPlan(sectionY, sectionIndex, section, BULK_NONE, section.getStates().copy(), waterlogged));
+            }
+        }
+
+        return new WaterChunkPlan(waterLevelY, allowFill, minY, maxY, sections, summary);
+    }
+
+    boolean needsAnalysis() {
+        for (SectionPlan section : sections) {
+            if (section.states != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Worker thread: classifies every copied section into its change mask. Only touches the private copies.
+     */
+    WaterChunkPlan analyze() {
+        for (SectionPlan section : sections) {
+            PalettedContainer<BlockState> states = section.states;
+            if (states == null) {
+                continue;
+            }
+
+            int sectionMinY = SectionPos.sectionToBlockCoord(section.sectionY);
+            int fromY = Math.max(0, minY - sectionMinY);
+            int toY = Math.min(15, maxY - sectionMinY);
+            int drainFromY = Math.max(fromY, waterLevelY + 1 - sectionMinY);
+            int fillToY = allowFill ? Math.min(toY, waterLevelY - sectionMinY) : -1;
+            long[] mask = new long[MASK_WORDS];
+            int changes = 0;
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    // The summary bounds each column: no air below its lowest air, no water above its highest water.
+                    int column = ChunkWaterSummary.column(x, z);
+                    int fillFromY = Math.max(fromY, lowestAir[column] - sectionMinY);
+                    int drainToY = section.waterlogged ? toY : Math.min(toY, highestWater[column] - sectionMinY);
+                    for (int y = fillFromY; y <= fillToY; y++) {
+                        changes += mark(mask, states, x, y, z, sectionMinY);
+                    }
+                    for (int y = drainFromY; y <= drainToY; y++) {
+                        changes += mark(mask, states, x, y, z, sectionMinY);
+                    }
+                }
+            }
+
+            section.mask = changes > 0 ? mask : null;
+            section.changes = changes;
+            section.states = null;
+        }
+        return this;
+    }
+
+    private int mark(long[] mask, PalettedContainer<BlockState> states, int x, int y, int z, int sectionMinY) {
+        if (!needsChange(states.get(x, y, z), sectionMinY + y, waterLevelY, allowFill)) {
+            return 0;
+        }
+        int index = maskIndex(x, y, z);
+        mask[index >> 6] |= 1L << (index & 63);
+        return 1;
+    }
+
+    /**
+     * Mask bits are ordered column by column with Y innermost, so applying them in bit order walks each column
+     * bottom to top. Four columns share one 64-bit word.
+     */
+    static int maskIndex(int x, int y, int z) {
+        return (x << 8) | (z << 4) | y;
+    }
+
+    static boolean needsChange(BlockState state, int worldY, int waterLevelY, boolean allowFill) {
+        if (worldY > waterLevelY) {
+            return WaterStateTable.isDrainable(state);
+        }
+        return allowFill && WaterStateTable.isAir(state);
+    }
+
+    static final class SectionPlan {
+        final int sectionY;
+        final int sectionIndex;
+        /** The section object seen at capture time; a different object at apply time means it was swapped. */
+        final LevelChunkSection section;
+        final int bulk;
+        final boolean waterlogged;
+        @Nullable
+        PalettedContainer<BlockState> states;
+        @Nullable
+        long[] mask;
+        int changes;
+
+        SectionPlan(int sectionY, int sectionIndex, LevelChunkSection section, int bulk, @Nullable PalettedContainer<BlockState> states, boolean waterlogged) {
+            this.sectionY = sectionY;
+            this.sectionIndex = sectionIndex;
+            this.section = section;
+            this.bulk = bulk;
+            this.states = states;
+            this.waterlogged = waterlogged;
+        }
+    }
+}
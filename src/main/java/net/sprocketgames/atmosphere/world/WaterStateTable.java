@@ -0,0 +1,123 @@
+package net.sprocketgames.atmosphere.world;
+
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.tags.FluidTags;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
+
+/**
+ * Water classification of every block state, indexed by block state id, so the scan and apply loops do one array
+ * read per position instead of property map and fluid tag checks.
+ *
+ * <p>The water fluid tag decides what drains, so the table is rebuilt whenever tags reload. It is built lazily on
+ * first use and swapped in as a whole, which keeps it safe to read from analysis and generation threads.
+ */
+public final class WaterStateTable {
+    private static final byte AIR = 1;
+    /** Holds water in any form: source, flowing, waterlogged or a water plant. */
+    private static final byte WATER = 2;
+    private static final byte WATERLOGGED = 4;
+    private static final byte WATER_SOURCE = 8;
+
+    static final Predicate<BlockState> IS_AIR = WaterStateTable::isAir;
+    static final Predicate<BlockState> IS_DRAINABLE = WaterStateTable::isDrainable;
+    static final Predicate<BlockState> IS_NOT_WATER_SOURCE = state -> !isWaterSource(state);
+
+    private static volatile Table table;
+
+    private WaterStateTable() {
+    }
+
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        table = build();
+    }
+
+    static boolean isAir(BlockState state) {
+        return (flags(state) & AIR) != 0;
+    }
+
+    static boolean isDrainable(BlockState state) {
+        return (flags(state) & (WATER | WATERLOGGED)) != 0;
+    }
+
+    static boolean isWaterSource(BlockState state) {
+        return (flags(state) & WATER_SOURCE) != 0;
+    }
+
+    /**
+     * The state a position should end up in, or null if it needs no change. Above the water level water drains
+     * and waterlogged blocks dry out; at or below it, air becomes water if filling is allowed. Also used by
+     * clients to apply compact section updates.
+     */
+    @Nullable
+    public static BlockState targetState(BlockState state, int worldY, int waterLevelY, boolean allowFill) {
+        if (worldY > waterLevelY) {
+            return drained(state);
+        }
+        return allowFill && isAir(state) ? Blocks.WATER.defaultBlockState() : null;
+    }
+
+    /**
+     * What a state becomes above the water line: the same state dried out if it is waterlogged, air if it holds
+     * water otherwise, or null if it stays.
+     */
+    @Nullable
+    static BlockState drained(BlockState state) {
+        return table().drained[Block.getId(state)];
+    }
+
+    private static byte flags(BlockState state) {
+        return table().flags[Block.getId(state)];
+    }
+
+    private static Table table() {
+        Table current = table;
+        if (current == null) {
+            current = build();
+            table = current;
+        }
+        return current;
+    }
+
+    private static Table build() {
+        int size = Block.BLOCK_STATE_REGISTRY.size();
+        byte[] flags = new byte[size];
+        BlockState[] drained = new BlockState[size];
+        BlockState air = Blocks.AIR.defaultBlockState();
+        BlockState waterSource = Blocks.WATER.defaultBlockState();
+
+        for (int id = 0; id < size; id++) {
+            BlockState state = Block.BLOCK_STATE_REGISTRY.byId(id);
+            if (state == null) {
+                continue;
+            }
+
+            byte stateFlags = 0;
+            if (state.isAir()) {
+                stateFlags |= AIR;
+            }
+            if (state.getFluidState().is(FluidTags.WATER)) {
+                stateFlags |= WATER;
+                drained[id] = air;
+            }
+            if (state.hasProperty(BlockStateProperties.WATERLOGGED) && state.getValue(BlockStateProperties.WATERLOGGED)) {
+                stateFlags |= WATERLOGGED;
+                drained[id] = state.setValue(BlockStateProperties.WATERLOGGED, false);
+            }
+            if (state == waterSource) {
+                stateFlags |= WATER_SOURCE;
+            }
+            flags[id] = stateFlags;
+        }
+        return new Table(flags, drained);
+    }
+
+    private record Table(byte[] flags, BlockState[] drained) {
+    }
+}